@@ -1,21 +1,24 @@
 package fr.umlv.chathack.client.core;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
@@ -23,19 +26,34 @@ import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import fr.umlv.chathack.contexts.BufferPool;
 import fr.umlv.chathack.contexts.Client;
 import fr.umlv.chathack.contexts.ClientContext;
+import fr.umlv.chathack.contexts.DataContext;
+import fr.umlv.chathack.contexts.DiskWriter;
+import fr.umlv.chathack.contexts.DownloadContext;
+import fr.umlv.chathack.contexts.Mailbox;
+import fr.umlv.chathack.contexts.StripedFile;
+import fr.umlv.chathack.contexts.UploadContext;
 import fr.umlv.chathack.resources.frames.ConnectionFrame;
-import fr.umlv.chathack.resources.frames.DlFileFrame;
+import fr.umlv.chathack.resources.frames.EnvelopeRequestFrame;
+import fr.umlv.chathack.resources.frames.FileRequestFrame;
 import fr.umlv.chathack.resources.frames.InitSendFileFrame;
 import fr.umlv.chathack.resources.frames.PrivateAnswerFromCliFrame;
-import fr.umlv.chathack.resources.frames.PrivateAuthCliFrame;
 import fr.umlv.chathack.resources.frames.PrivateMessageFrame;
 import fr.umlv.chathack.resources.frames.PrivateRequestFrame;
+import fr.umlv.chathack.resources.frames.PublicFragmentFromCliFrame;
 import fr.umlv.chathack.resources.frames.PublicMessageFromCliFrame;
 
 public class ChatHackClient implements Client {
 	static final private Logger logger = Logger.getLogger(ChatHackClient.class.getName());
+	static final private int DATA_CONNECTION_THRESHOLD = 1024 * 1024; // Files of at least 1 MiB are sent on a data connection.
+	
+	private record Upload(String login, String fileName, long size, StripedFile striped) {} // A file offered to a client on data connections, striped once asked for.
+	private record Offer(String login, String fileName, long size) {} // A file offered by a client on data connections.
+	private record Download(File file, StripedFile striped, List<DownloadContext> stripes) {} // A file downloaded on data connections, in the given file.
+	private record Range(long start, long end) {} // A range of a file, downloaded on a data connection.
+	private record PendingFile(String fileName, int stripes) {} // A file to send once the communication is established.
 	
 	private final InetSocketAddress publicServer;
 	private final Selector selector;
@@ -46,14 +64,20 @@ public class ChatHackClient implements Client {
 	private final Map<Integer, String> privatePendingClients; // Clients asking for connection and having a token ID but not yet connected. Key:ClientID ; Value:Login
 	private final Map<String, ClientContext> privateAskingClients; // Clients asking for connection and not having a token ID. Key:Login ; Value:ClientContext
 	private final Map<String, Queue<PrivateMessageFrame>> privatePendingMessages; // Messages sent to a client whose communication has not yet been established. Key:login ; Value:Messages queue
-	private final Map<String, Queue<String>> privatePendingFiles; // Files sent to a client whose communication has not yet been established. Key:login ; Value:Files queue
+	private final Map<String, Queue<PendingFile>> privatePendingFiles; // Files sent to a client whose communication has not yet been established. Key:login ; Value:Files queue
+	private final Map<Integer, Upload> uploads; // Files announced to be sent on a data connection, not yet asked for. Key:FileID ; Value:Upload
+	private final Map<Offer, Download> downloads; // Files downloaded on a data connection, kept once interrupted to be resumed. Key:Offer ; Value:Download
 	
 	private final String login;
 	private final String password;
 	private final Path filesRepertory;
 	private int fileId;
+	private boolean envelope; // True if the envelope of the protocol v2 is asked to the public server.
     
     private final Thread mainThread;
+    private final Mailbox mailbox; // Commands posted by the user input thread to the main thread.
+    private final TransferScheduler transfers; // Files sent by chunks, used by the main thread only.
+    private final DiskWriter diskWriter; // Writes the received files, off the main thread.
 	
 	public ChatHackClient(InetSocketAddress server, Path filesRepertory, String login) throws IOException {
 		this(server, filesRepertory, login, "");
@@ -71,6 +95,8 @@ public class ChatHackClient implements Client {
 		this.privateAskingClients = new HashMap<>();
 		this.privatePendingMessages = new HashMap<>();
 		this.privatePendingFiles = new HashMap<>();
+		this.uploads = new HashMap<>();
+		this.downloads = new HashMap<>();
 		
 		this.login = Objects.requireNonNull(login);
 		this.password = Objects.requireNonNull(password);
@@ -78,6 +104,18 @@ public class ChatHackClient implements Client {
 		this.fileId = 0;
 		
 		this.mainThread = new Thread(this::run);
+		this.mailbox = new Mailbox(selector, mainThread);
+		this.transfers = new TransferScheduler(this, mailbox);
+		this.diskWriter = new DiskWriter(mailbox);
+	}
+	
+	/**
+	 * Asks the public server for the envelope of the protocol v2 when connecting.<br>
+	 * A server predating it ignores the request, the frames then stay without envelope.
+	 * Must be called before launch().
+	 */
+	public void askForEnvelope() {
+		envelope = true;
 	}
 	
 	/**
@@ -127,6 +165,8 @@ public class ChatHackClient implements Client {
 		privatePendingClients.clear();
 		privateAskingClients.clear();
 		privatePendingMessages.clear();
+		uploads.clear();
+		downloads.clear();
 		
 		/* Initialization of public server connection */
 		SocketChannel sc = SocketChannel.open();
@@ -134,7 +174,7 @@ public class ChatHackClient implements Client {
 		sc.connect(Objects.requireNonNull(publicServer));
 		
 		publicServerChannelKey = sc.register(selector, SelectionKey.OP_CONNECT);
-		publicServerChannelKey.attach(new ClientContext(publicServerChannelKey, this));
+		publicServerChannelKey.attach(new ClientContext(publicServerChannelKey, mailbox, this));
 	}
 	
 	/**
@@ -144,7 +184,9 @@ public class ChatHackClient implements Client {
 		logger.log(Level.INFO, "Starting communication");
 		while ( !Thread.interrupted() ) {
 			try {
+				mailbox.drain();
 				selector.select(this::treatKey, 100);
+				transfers.pump();
 			} catch(IOException ioe) {
 				throw new UncheckedIOException(ioe);
 			}
@@ -159,6 +201,11 @@ public class ChatHackClient implements Client {
      * @throws UncheckedIOException if connection or acceptance caused an IOException.
 	 */
 	private void treatKey(SelectionKey key) {
+		if ( key.attachment() instanceof DataContext data ) {
+			treatDataKey(key, data);
+			return;
+		}
+		
 		try {
 			if (key.isValid() && key.isConnectable()) {
 				doConnect(key);
@@ -182,6 +229,30 @@ public class ChatHackClient implements Client {
 		}
 	}
     
+    /**
+     * Performs an action according to the available state of the key of a data connection.<br>
+     * The connection is closed if an I/O error occurs.
+     * 
+     * @param key The key ready for an I/O action.
+     * @param data The context of the data connection.
+     */
+    private void treatDataKey(SelectionKey key, DataContext data) {
+    	try {
+    		if ( key.isValid() && key.isConnectable() ) {
+    			data.doConnect();
+    		}
+    		if ( key.isValid() && key.isWritable() ) {
+    			data.doWrite();
+    		}
+    		if ( key.isValid() && key.isReadable() ) {
+    			data.doRead();
+    		}
+    	} catch (IOException e) {
+    		logger.log(Level.WARNING, "Error on a data connection", e);
+    		data.close();
+    	}
+    }
+    
     /**
      * Finishes the process of connection with server if possible.<br>
      * Then, if the server corresponds to the public server,
@@ -211,11 +282,14 @@ public class ChatHackClient implements Client {
     			(key.equals(publicServerChannelKey) ? "public server" : ctx.getLogin()) + ") established.");
     	
     	if ( key.equals(publicServerChannelKey) ) {											// Public server connection
-    		/* Sending authentication request for public server */
+    		/* Sending authentication request for public server : nothing else is sent until the answer */
     		ctx.queueMessage(new ConnectionFrame(login, password, !password.isEmpty()));
+    		if ( envelope ) {
+    			ctx.queueMessage(new EnvelopeRequestFrame());
+    		}
     	} else {																			// Private server connection
     		/* Sending authentication request for private server */
-    		ctx.queueMessage(new PrivateAuthCliFrame(this.login, ctx.getTokenId()));
+    		ctx.authenticateToPrivateServer(this.login);
     		
     		/* Adding the private client to the list */
     		addPrivateClient(ctx.getLogin(), ctx);
@@ -231,7 +305,8 @@ public class ChatHackClient implements Client {
     		/* Sending files that were pending */
     		if ( privatePendingFiles.containsKey(ctx.getLogin()) ) {
         		while ( !privatePendingFiles.get(ctx.getLogin()).isEmpty() ) {
-        			sendFile(privatePendingFiles.get(ctx.getLogin()).remove(), ctx.getLogin());
+        			var pending = privatePendingFiles.get(ctx.getLogin()).remove();
+        			sendFile(pending.fileName(), ctx.getLogin(), pending.stripes());
         		}
         		privatePendingFiles.remove(ctx.getLogin());
     		}
@@ -253,13 +328,13 @@ public class ChatHackClient implements Client {
         
         sc.configureBlocking(false);
         SelectionKey clientKey = sc.register(selector, SelectionKey.OP_READ);
-        clientKey.attach(new ClientContext(clientKey, this));
+        clientKey.attach(new ClientContext(clientKey, mailbox, this, BufferPool.FILES));
     }
 	
     /**
      * Closes the connection with the server.<br>
-     * If the connection corresponded to a private server, the corresponding client
-     * is removed from the clients list.
+     * The connection is closed by its context : if it corresponded to a private server,
+     * the corresponding client is removed from the clients list and the files it was sending are closed.
      * <br>
      * It does not throw exception if an I/O error occurs.
      */
@@ -267,19 +342,26 @@ public class ChatHackClient implements Client {
     	SocketChannel sc = (SocketChannel) key.channel();
         ClientContext ctx = (ClientContext) key.attachment();
         
-        if ( !key.equals(publicServerChannelKey) ) {
-        	privateClients.remove(ctx.getLogin());
-        	System.out.println("Connection interrupted with " + ctx.getLogin());
-        } else {
+        if ( key.equals(publicServerChannelKey) ) {
         	System.out.println("Connection interrupted with public server");
         }
         
         try {
         	logger.log(Level.INFO, "Connection closed with " + sc.getRemoteAddress());
-            sc.close();
         } catch (IOException e) {
-        	logger.log(Level.SEVERE, "Error while closing connexion with server", e);
+        	logger.log(Level.INFO, "Connection closed with a server");
         }
+        
+        ctx.close();
+    }
+    
+    @Override
+    public void removePrivateClient(ClientContext ctx) {
+    	// The connections not authenticated, such as the data connections, are not in the list.
+    	if ( privateClients.values().remove(ctx) ) {
+    		transfers.cancel(ctx.getLogin());
+    		System.out.println("Connection interrupted with " + ctx.getLogin());
+    	}
     }
     
     /**
@@ -320,6 +402,19 @@ public class ChatHackClient implements Client {
     	}
     }
     
+    /**
+     * Creates the private server if it does not exist yet.
+     * 
+     * @return True if the private server exists.
+     */
+    private boolean ensurePrivateServerValid() {
+    	if ( Objects.isNull(privateServerSocketChannel) ) {
+    		createPrivateServer();
+    	}
+    	
+    	return !Objects.isNull(privateServerSocketChannel);
+    }
+    
     /**
      * Determines if the given token ID is already in use.
      * 
@@ -357,21 +452,29 @@ public class ChatHackClient implements Client {
     
     /**
      * Checks if the public server is accessible or not,
-     * prints a message if it's not and return false.
+     * prints a message if it's not and return false.<br>
+     * The server is not accessible either until it answers the connection request :
+     * the frames following the answer are enveloped if the server accepts the envelope of the protocol v2.
      * 
      * @return true if the public server is accessible, false otherwise.
      */
     private boolean ensurePublicServerValid() {
-    	if ( publicServerChannelKey.isValid() ) {
-    		return true;
+    	if ( !publicServerChannelKey.isValid() ) {
+    		System.out.println("The public server is no longer accessible");
+    		return false;
+    	}
+    	
+    	if ( !((ClientContext) publicServerChannelKey.attachment()).isConnectionAnswered() ) {
+    		System.out.println("The public server has not answered the connection request yet");
+    		return false;
     	}
     	
-    	System.out.println("The public server is no longer accessible");
-    	return false;
+    	return true;
     }
 
     /**
-     * Adds a string message to the public server's queue.
+     * Adds a string message to the public server's queue.</br>
+     * A message too long to fit in a single frame is split in fragments, queued one after the other.
      * 
      * @param msg The message to send.
      */
@@ -381,8 +484,20 @@ public class ChatHackClient implements Client {
     	}
     	
     	ClientContext ctx = (ClientContext) publicServerChannelKey.attachment();
+    	var encodedMsg = msg.getBytes(StandardCharsets.UTF_8);
     	
-    	ctx.queueMessage(new PublicMessageFromCliFrame(msg));
+    	if ( encodedMsg.length <= PublicFragmentFromCliFrame.FRAGMENT_SIZE ) {
+    		ctx.queueMessage(new PublicMessageFromCliFrame(encodedMsg));
+    		return;
+    	}
+    	
+    	try {
+    		for (var fragment : PublicFragmentFromCliFrame.split(encodedMsg)) {
+    			ctx.queueMessage(fragment);
+    		}
+    	} catch (IllegalArgumentException e) {
+    		System.out.println(e.getMessage());
+    	}
     }
     
     /**
@@ -404,7 +519,7 @@ public class ChatHackClient implements Client {
 		
 		/* Creating messages's queue */
 		privatePendingMessages.put(login, new LinkedList<PrivateMessageFrame>());
-		privatePendingFiles.put(login, new LinkedList<String>());
+		privatePendingFiles.put(login, new LinkedList<PendingFile>());
     }
     
     /**
@@ -481,80 +596,40 @@ public class ChatHackClient implements Client {
     }
     
     /**
-     * Starts a new thread which send the content of a file by rounds of chunks,
-     * until the whole file is sent.
+     * Sends a file to the recipient client, by rounds of chunks or on a single data connection.
      * 
-     * @param ctx The recipient client context.
-     * @param fileName The file path to send.
-     * @param currentId The file ID.
+     * @param fileName The name of the file in the files directory.
+     * @param login The login of the recipient client.
+     * 
+     * @throws FileNotFoundException It should never happened.
      */
-    private void sendFileByRounds(ClientContext ctx, String fileName, int currentId) {
-		log(Level.INFO, "Starting sending the file " + fileName);
-
-		new Thread(() -> {
-			try (FileInputStream ios = new FileInputStream(filesRepertory.resolve(fileName).toString())) {
-				byte[] buffer = new byte[524_288];
-				var read = 0;
-				var pos = 0;
-				var dataSize = 0;
-				try {
-					while ((read = ios.read(buffer)) != -1) {
-						while (ctx.getQueueSize() > 0) {
-							
-							var lock = ctx.getLock();
-							lock.lock();
-							try {
-								ctx.getIsQueueEmptyCondition().await();
-							} catch (InterruptedException e) {
-								return;
-							}finally {
-								lock.unlock();
-							}
-						}
-						while(pos < read) {
-							
-							var subArray = Arrays.copyOfRange(buffer, pos, pos+1024 > read ? read : pos + 1024);
-							dataSize = pos+1024 > read ? read - pos : 1024;
-							pos += 1024;
-							var frame = new DlFileFrame(currentId, dataSize, subArray);
-							ctx.queueMessage(frame);
-
-						}
-						pos = 0;
-						
-					}
-					System.out.println("File " + fileName + " uploaded");
-					log(Level.INFO, "Sending of file " + fileName + " complete");
-				} catch (IOException ioe) {
-					log(Level.SEVERE, "Error while reading the file to send", ioe);
-					return;
-				}
-			} catch (FileNotFoundException fnfe) {
-				log(Level.SEVERE, "File not found", fnfe); // this should never happened
-				return;
-			} catch (IOException ioe2) {
-				log(Level.SEVERE, "Error while closing FileInputStream", ioe2);
-			}
-		}).start();
+    public void sendFile(String fileName, String login) {
+    	sendFile(fileName, login, 1);
     }
     
     /**
-     * Sends a file to the recipient client, by rounds of chunks.
+     * Sends a file to the recipient client.<br>
+     * Small files are sent by rounds of chunks on the private connection, the other ones are downloaded
+     * by the recipient on the given number of data connections, each one carrying a range of the file.
      * 
      * @param fileName The name of the file in the files directory.
      * @param login The login of the recipient client.
-     * 
-     * @throws FileNotFoundException It should never happened.
+     * @param stripes The number of data connections, between 1 and StripedFile.MAX_STRIPES.
      */
-    public void sendFile(String fileName, String login) {
+    public void sendFile(String fileName, String login, int stripes) {
     	if ( login.equals(this.login) ) {
     		System.out.println("You can't establish a private communication with yourself");
     		return;
     	}
     	
+    	if ( stripes <= 0 || stripes > StripedFile.MAX_STRIPES ) {
+    		System.out.println("A file can be sent on 1 to " + StripedFile.MAX_STRIPES + " connections");
+    		return;
+    	}
+    	
 		if (!privateClients.containsKey(login)) {				// If communication has not been established yet
 			if ( privatePendingFiles.containsKey(login) ) {		// If request for private communication has been sent but not yet established
-				privatePendingFiles.get(login).add(fileName);
+				privatePendingFiles.get(login).add(new PendingFile(fileName, stripes));
 			} else {											// If request for private communication establishment has not been sent
 	    		/* There are 2 cases :
 	    		 * - This client is requesting to establish a private communication.
@@ -577,7 +652,7 @@ public class ChatHackClient implements Client {
 	    			sendPrivateRequest(login);
 	        		
 	        		/* Queuing messages */
-	    			privatePendingFiles.get(login).add(fileName);
+	    			privatePendingFiles.get(login).add(new PendingFile(fileName, stripes));
 	    		}
 			}
 			
@@ -592,18 +667,169 @@ public class ChatHackClient implements Client {
 			return;
 		}
 		
-		if (f.length() > Integer.MAX_VALUE) {
-			System.err.println("Only files smaller than 2GB are allowed");
-			return;
-		}
-		
 		var currentId = fileId;
 		fileId++;
 		
 		var ctx = privateClients.get(login);
-		ctx.queueMessage(new InitSendFileFrame(fileName, (int) f.length(), currentId));
 		
-		sendFileByRounds(ctx, fileName, currentId);
+		/* Large files are downloaded by the recipient on data connections to the private server */
+		if ( f.length() >= DATA_CONNECTION_THRESHOLD && ensurePrivateServerValid() ) {
+			uploads.put(currentId, new Upload(login, fileName, f.length(), null));
+			ctx.queueMessage(new InitSendFileFrame(fileName, f.length(), currentId,
+					privateServerSocketChannel.socket().getLocalPort(), stripes));
+			
+			log(Level.INFO, "File " + fileName + " offered to " + login + " on " + stripes + " data connection(s)");
+			return;
+		}
+		
+		ctx.queueMessage(new InitSendFileFrame(fileName, f.length(), currentId));
+		
+		transfers.submit(ctx, login, filesRepertory.resolve(fileName), currentId, f.length());
+    }
+    
+    @Override
+    public void startDownload(InetSocketAddress server, String login, String fileName, long fileSize, int fileID, int tokenID, int stripes) throws IOException {
+    	var offer = new Offer(login, fileName, fileSize);
+    	var previous = downloads.get(offer);
+    	downloads.values().removeIf(download -> download.striped().isComplete());
+    	
+    	File f;
+    	var ranges = new ArrayList<Range>();
+    	if ( !Objects.isNull(previous) && previous.striped().isOver() && !previous.striped().isComplete() && previous.file().exists() ) {
+    		/* The file of the interrupted download is completed, instead of a new copy */
+    		f = previous.file();
+    		for (var stripe : previous.stripes()) {
+    			if ( !stripe.isComplete() ) {
+    				ranges.add(new Range(stripe.getWrittenPosition(), stripe.getEnd()));
+    			}
+    		}
+    		System.out.println("Resuming download of file " + fileName);
+    		log(Level.INFO, "Resuming download of file " + fileName + " from " + login + " in " + f + " : " + ranges);
+    	} else {
+    		f = createFile(fileName);
+    		
+    		/* The file is split in ranges of equal sizes, of at least DATA_CONNECTION_THRESHOLD bytes */
+    		var count = Math.min(stripes, Math.max(1, fileSize / DATA_CONNECTION_THRESHOLD));
+    		var stripeSize = (fileSize + count - 1) / count;
+    		for (long start = 0; start < fileSize; start += stripeSize) {
+    			ranges.add(new Range(start, Math.min(fileSize, start + stripeSize)));
+    		}
+    	}
+    	
+    	var striped = new StripedFile(this, fileName, ranges.size(), "Download of file " + fileName + " complete.");
+    	var contexts = new ArrayList<DownloadContext>();
+    	try {
+    		for (var range : ranges) {
+    			contexts.add(openStripe(server, f, striped, range, fileID, tokenID));
+    		}
+    	} catch (IOException e) {
+    		for (var ctx : contexts) {
+    			ctx.close();
+    		}
+    		throw e;
+    	}
+    	
+    	downloads.put(offer, new Download(f, striped, contexts));
+    }
+    
+    /**
+     * Opens a data connection to the private server of the sender of a file, on which a range of the file is downloaded.
+     * 
+     * @param server The private server of the sender.
+     * @param f The file to write.
+     * @param striped The file downloaded.
+     * @param range The range of the file to download.
+     * @param fileID The file identifier given by the sender.
+     * @param tokenID The token ID of the private communication with the sender.
+     * 
+     * @return The context of the data connection.
+     * 
+     * @throws IOException
+     */
+    private DownloadContext openStripe(InetSocketAddress server, File f, StripedFile striped, Range range, int fileID, int tokenID) throws IOException {
+    	var file = FileChannel.open(f.toPath(), StandardOpenOption.WRITE); // Each range is written at its position through its own channel.
+    	
+    	try {
+    		SocketChannel sc = SocketChannel.open();
+    		sc.configureBlocking(false);
+    		sc.connect(Objects.requireNonNull(server));
+    		
+    		var key = sc.register(selector, SelectionKey.OP_CONNECT);
+    		var request = new FileRequestFrame(this.login, tokenID, fileID, range.start(), range.end() - range.start(), striped.getStripes());
+    		var ctx = new DownloadContext(key, this, file, striped, range.start(), range.end(), request, diskWriter);
+    		key.attach(ctx);
+    		return ctx;
+    	} catch (IOException e) {
+    		file.close();
+    		throw e;
+    	}
+    }
+    
+    @Override
+    public void startUpload(String login, int tokenID, int fileID, long position, long length, int stripes, SelectionKey key) {
+    	var ctx = privateClients.get(login);
+    	var upload = uploads.get(fileID);
+    	
+    	if ( Objects.isNull(ctx) || ctx.getTokenId() != tokenID || Objects.isNull(upload) || !upload.login().equals(login) ) {
+    		logger.log(Level.WARNING, "Someone asked with failure for the file " + fileID + " with login " + login);
+    		silentlyCloseDataConnection(key);
+    		return;
+    	}
+    	if ( position < 0 || length <= 0 || length > upload.size() - position ) {
+    		logger.log(Level.WARNING, login + " asked for the file " + fileID + " the invalid range of " + length + " bytes from " + position);
+    		silentlyCloseDataConnection(key);
+    		return;
+    	}
+    	
+    	/* The first data connection opened by the client tells on how many connections the file is sent */
+    	var striped = upload.striped();
+    	if ( Objects.isNull(striped) ) {
+    		if ( stripes <= 0 || stripes > StripedFile.MAX_STRIPES ) {
+    			logger.log(Level.WARNING, login + " asked for the file " + fileID + " on an invalid number of connections " + stripes);
+    			silentlyCloseDataConnection(key);
+    			return;
+    		}
+    		
+    		striped = new StripedFile(this, upload.fileName(), stripes, "File " + upload.fileName() + " uploaded");
+    		upload = new Upload(login, upload.fileName(), upload.size(), striped);
+    		uploads.put(fileID, upload);
+    	} else if ( striped.getStripes() != stripes ) {
+    		logger.log(Level.WARNING, login + " asked for the file " + fileID + " on " + stripes + " connections instead of " + striped.getStripes());
+    		silentlyCloseDataConnection(key);
+    		return;
+    	}
+    	
+    	try {
+    		var file = FileChannel.open(filesRepertory.resolve(upload.fileName()), StandardOpenOption.READ);
+    		if ( file.size() < upload.size() ) {
+    			file.close();
+    			throw new IOException("The file " + upload.fileName() + " has been truncated");
+    		}
+    		
+    		key.attach(new UploadContext(key, this, file, striped, position, position + length));
+    		log(Level.INFO, "Starting sending the file " + upload.fileName() + " on a data connection, " + length + " bytes from byte " + position);
+    	} catch (IOException e) {
+    		logger.log(Level.SEVERE, "Error while opening the file to send", e);
+    		silentlyCloseDataConnection(key);
+    	}
+    	
+    	if ( striped.isFullyOpened() ) {
+    		uploads.remove(fileID);
+    	}
+    }
+    
+    /**
+     * Closes a data connection to which no file is attached.<br>
+     * It does not throw exception if an I/O error occurs.
+     * 
+     * @param key The key of the connection.
+     */
+    private void silentlyCloseDataConnection(SelectionKey key) {
+    	try {
+    		key.channel().close();
+    	} catch (IOException e) {
+    		logger.log(Level.SEVERE, "Error while closing a data connection", e);
+    	}
     }
     
     @Override
@@ -636,7 +862,7 @@ public class ChatHackClient implements Client {
 		sc.connect(Objects.requireNonNull(server));
 		
 		var privateServerKey = sc.register(selector, SelectionKey.OP_CONNECT);
-		var ctx = new ClientContext(privateServerKey, this);
+		var ctx = new ClientContext(privateServerKey, mailbox, this, BufferPool.FILES);
 		ctx.setLogin(login);
 		ctx.setTokenId(tokenID);
 		privateServerKey.attach(ctx);
@@ -662,35 +888,62 @@ public class ChatHackClient implements Client {
     }
     
     @Override
-    public FileOutputStream createNewFile(String fileName) {
-		File dir = new File(filesRepertory.toString());
-		var pathNumber = 1;
-		if (!dir.exists())
-			dir.mkdirs();
-		var path = filesRepertory.resolve(fileName).toString();
-		File f = new File(path);
-		try {
-			// Creates a new file like fileName (i) if already exist
-			while (!f.createNewFile()) {
-                var splited = path.split("\\.");
-                if (splited.length > 1) {
-                	splited[splited.length - 2] =  splited[splited.length - 2] + "_(" + pathNumber + ")";
-                } else {
-                    //length == 1
-                    splited[0] = splited[0] + "(" + pathNumber + ")";
-                }
-                var newPath = String.join(".", splited);
-                f = new File(newPath);
-                pathNumber++;
-            }
-		} catch (IOException e) {
-			System.err.println("File can't be created");
+    public DiskWriter getDiskWriter() {
+    	return diskWriter;
+    }
+    
+    @Override
+    public FileChannel createNewFile(String fileName) throws IOException {
+		Files.createDirectories(filesRepertory);
+		var path = filesRepertory.resolve(fileName);
+		for (var pathNumber = 1; ; pathNumber++) {
+			try {
+				return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			} catch (FileAlreadyExistsException e) {
+				path = numberedPath(fileName, pathNumber);
+			}
 		}
-		try {
-			return new FileOutputStream(f.getPath(), true); // Creates the file in append mode
-		} catch (FileNotFoundException e) {
-			System.err.println("Probleme while creating FileOutputStream");
-			return null; // Should never happened
+    }
+    
+    /**
+     * Creates a new empty file with the given name in the files directory.<br>
+     * If a file with this name already exists, a number is added to the name.
+     * 
+     * @param fileName The file name.
+     * 
+     * @return The file created.
+     * 
+     * @throws IOException If the file can not be created.
+     */
+    private File createFile(String fileName) throws IOException {
+		Files.createDirectories(filesRepertory);
+		var path = filesRepertory.resolve(fileName);
+		for (var pathNumber = 1; ; pathNumber++) {
+			try {
+				return Files.createFile(path).toFile();
+			} catch (FileAlreadyExistsException e) {
+				path = numberedPath(fileName, pathNumber);
+			}
 		}
     }
+    
+    /**
+     * Retrieves the path of the files directory given to a file when a file with its name already exists,
+     * like fileName_(i).extension.
+     * 
+     * @param fileName The file name.
+     * @param pathNumber The number added to the name.
+     * 
+     * @return The numbered path.
+     */
+    private Path numberedPath(String fileName, int pathNumber) {
+        var splited = fileName.split("\\.");
+        if (splited.length > 1) {
+        	splited[splited.length - 2] =  splited[splited.length - 2] + "_(" + pathNumber + ")";
+        } else {
+            //length == 1
+            splited[0] = splited[0] + "(" + pathNumber + ")";
+        }
+        return filesRepertory.resolve(String.join(".", splited));
+    }
 }
@@ -0,0 +1,291 @@
+package fr.umlv.chathack.client.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+import fr.umlv.chathack.contexts.Client;
+import fr.umlv.chathack.contexts.ClientContext;
+import fr.umlv.chathack.contexts.Mailbox;
+import fr.umlv.chathack.resources.frames.DlFileFrame;
+
+/**
+ * Schedules the files sent by chunks to the private clients.</br>
+ * The files are read by rounds on a small pool of worker threads, and the chunks of a round are
+ * handed to the thread selecting the keys through its mailbox : the scheduler is only used by this
+ * thread, so neither its state nor the contexts need locks.</br>
+ * </br>
+ * A round of a file is read once the chunks queued to its recipient are almost sent, and the files sent
+ * to the same client take their turn, so a large file does not delay the other ones. The number of files
+ * sent at the same time is bounded, for each client and overall : the other files wait for their turn.
+ */
+final class TransferScheduler {
+	private static final int WORKERS = 2;
+	private static final int MAX_TRANSFERS = 8; // Files sent at the same time, to all the clients.
+	private static final int MAX_TRANSFERS_PER_CLIENT = 2;
+	private static final int ROUND_SIZE = 256 * 1024; // Bytes of a file read by a worker at once.
+	private static final int LOW_WATER_MARK = ROUND_SIZE / 2; // Bytes queued to a client under which a round is read.
+
+	/**
+	 * File being sent to a client.
+	 */
+	private static final class Transfer {
+		private final ClientContext ctx;
+		private final String login;
+		private final Path path;
+		private final String fileName;
+		private final int fileId;
+		private final long size;
+		private FileChannel file; // Opened by the worker reading the first round.
+		private long position; // Number of bytes of the file already queued.
+		private boolean cancelled;
+
+		private Transfer(ClientContext ctx, String login, Path path, String fileName, int fileId, long size) {
+			this.ctx = ctx;
+			this.login = login;
+			this.path = path;
+			this.fileName = fileName;
+			this.fileId = fileId;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Files being sent to a client, in their turn order.
+	 */
+	private static final class Recipient {
+		private final ArrayDeque<Transfer> transfers = new ArrayDeque<>();
+		private Transfer reading; // The file whose round is read by a worker, null if none.
+	}
+
+	private final Client client;
+	private final Mailbox mailbox;
+	private final ExecutorService workers;
+	private final ArrayDeque<Transfer> waiting; // Files not sent yet, in their submission order.
+	private final Map<String, Recipient> recipients; // Key:login ; Value:Files being sent to the client
+	private int transfers; // Number of files being sent.
+
+	/**
+	 * Constructor of a scheduler.
+	 *
+	 * @param client The client sending the files, used to log.
+	 * @param mailbox The mailbox of the thread selecting the keys, which is the only one using the scheduler.
+	 */
+	TransferScheduler(Client client, Mailbox mailbox) {
+		this.client = Objects.requireNonNull(client);
+		this.mailbox = Objects.requireNonNull(mailbox);
+		this.workers = Executors.newFixedThreadPool(WORKERS, Thread.ofPlatform().daemon().name("file-reader-", 0).factory());
+		this.waiting = new ArrayDeque<>();
+		this.recipients = new HashMap<>();
+		this.transfers = 0;
+	}
+
+	/**
+	 * Adds a file to send by chunks to a private client.
+	 *
+	 * @param ctx The context of the private connection with the client.
+	 * @param login The login of the client.
+	 * @param path The path of the file.
+	 * @param fileId The file identifier, already announced to the client.
+	 * @param size The number of bytes of the file to send.
+	 */
+	void submit(ClientContext ctx, String login, Path path, int fileId, long size) {
+		var transfer = new Transfer(Objects.requireNonNull(ctx), Objects.requireNonNull(login), Objects.requireNonNull(path),
+				path.getFileName().toString(), fileId, size);
+
+		waiting.add(transfer);
+		client.log(Level.INFO, "File " + transfer.fileName + " waiting to be sent to " + login);
+		pump();
+	}
+
+	/**
+	 * Stops sending files to the given client, whose connection has been closed.
+	 *
+	 * @param login The login of the client.
+	 */
+	void cancel(String login) {
+		waiting.removeIf(transfer -> transfer.login.equals(login));
+
+		var recipient = recipients.remove(login);
+		if ( Objects.isNull(recipient) ) {
+			return;
+		}
+
+		for (var transfer : recipient.transfers) {
+			transfer.cancelled = true;
+			transfers--;
+			if ( transfer != recipient.reading ) {
+				closeFile(transfer); // Otherwise the worker may still use the file, it is closed once the round is delivered.
+			}
+		}
+	}
+
+	/**
+	 * Starts the waiting files allowed by the bounds, then reads a round of the files whose
+	 * recipient has almost sent the chunks already queued.<br>
+	 * Called after each selection, and when a round is delivered.
+	 */
+	void pump() {
+		for (Iterator<Transfer> it = waiting.iterator(); it.hasNext() && transfers < MAX_TRANSFERS; ) {
+			var transfer = it.next();
+			var recipient = recipients.computeIfAbsent(transfer.login, login -> new Recipient());
+
+			if ( recipient.transfers.size() < MAX_TRANSFERS_PER_CLIENT ) {
+				it.remove();
+				recipient.transfers.add(transfer);
+				transfers++;
+				client.log(Level.INFO, "Starting sending the file " + transfer.fileName);
+			}
+		}
+
+		for (var recipient : recipients.values()) {
+			if ( !Objects.isNull(recipient.reading) || recipient.transfers.isEmpty() ) {
+				continue;
+			}
+
+			var transfer = recipient.transfers.peek();
+			if ( transfer.ctx.getQueuedBytes() >= LOW_WATER_MARK ) {
+				continue;
+			}
+
+			/* The files of a client take their turn, one round each */
+			recipient.transfers.add(recipient.transfers.poll());
+			recipient.reading = transfer;
+
+			var chunkSize = transfer.ctx.getChunkSize();
+			workers.execute(() -> readRound(transfer, chunkSize));
+		}
+	}
+
+	/**
+	 * Reads the next round of a file, and gives its chunks to the thread selecting the keys.<br>
+	 * Called by a worker thread.
+	 *
+	 * @param transfer The file being sent.
+	 * @param chunkSize The size of the chunks.
+	 */
+	private void readRound(Transfer transfer, int chunkSize) {
+		var chunks = new ArrayList<DlFileFrame>();
+		long position;
+
+		try {
+			if ( Objects.isNull(transfer.file) ) {
+				transfer.file = FileChannel.open(transfer.path, StandardOpenOption.READ);
+			}
+
+			position = transfer.position;
+			var end = Math.min(transfer.size, position + ROUND_SIZE);
+			while ( position < end ) {
+				var chunk = ByteBuffer.allocate((int) Math.min(chunkSize, end - position));
+				while ( chunk.hasRemaining() ) {
+					if ( transfer.file.read(chunk, position + chunk.position()) == -1 ) {
+						throw new IOException("The file " + transfer.fileName + " has been truncated");
+					}
+				}
+				chunks.add(new DlFileFrame(transfer.fileId, chunk.array()));
+				position += chunk.capacity();
+			}
+		} catch (IOException e) {
+			mailbox.execute(() -> failed(transfer, e));
+			return;
+		}
+
+		var end = position;
+		mailbox.execute(() -> delivered(transfer, chunks, end));
+	}
+
+	/**
+	 * Queues the chunks of a round read by a worker.
+	 *
+	 * @param transfer The file being sent.
+	 * @param chunks The chunks of the round.
+	 * @param position The position in the file following the round.
+	 */
+	private void delivered(Transfer transfer, List<DlFileFrame> chunks, long position) {
+		if ( transfer.cancelled ) {
+			closeFile(transfer);
+			return;
+		}
+
+		for (var chunk : chunks) {
+			transfer.ctx.queueMessage(chunk);
+		}
+		transfer.position = position;
+
+		var recipient = recipients.get(transfer.login);
+		recipient.reading = null;
+
+		if ( transfer.position == transfer.size ) {
+			finish(recipient, transfer);
+			System.out.println("File " + transfer.fileName + " uploaded");
+			client.log(Level.INFO, "Sending of file " + transfer.fileName + " complete");
+		}
+		pump();
+	}
+
+	/**
+	 * Gives up sending a file which could not be read.
+	 *
+	 * @param transfer The file being sent.
+	 * @param e The error of the worker.
+	 */
+	private void failed(Transfer transfer, IOException e) {
+		if ( transfer.cancelled ) {
+			closeFile(transfer);
+			return;
+		}
+
+		var recipient = recipients.get(transfer.login);
+		recipient.reading = null;
+		finish(recipient, transfer);
+
+		System.out.println("Sending of file " + transfer.fileName + " failed");
+		client.log(Level.SEVERE, "Error while reading the file to send", e);
+		pump();
+	}
+
+	/**
+	 * Removes a file from the files being sent, and closes it.
+	 *
+	 * @param recipient The recipient of the file.
+	 * @param transfer The file.
+	 */
+	private void finish(Recipient recipient, Transfer transfer) {
+		recipient.transfers.remove(transfer);
+		if ( recipient.transfers.isEmpty() ) {
+			recipients.remove(transfer.login);
+		}
+		transfers--;
+		closeFile(transfer);
+	}
+
+	/**
+	 * Closes the file of a transfer, if it has been opened.<br>
+	 * It does not throw exception if an I/O error occurs.
+	 *
+	 * @param transfer The transfer.
+	 */
+	private void closeFile(Transfer transfer) {
+		if ( Objects.isNull(transfer.file) ) {
+			return;
+		}
+
+		try {
+			transfer.file.close();
+		} catch (IOException e) {
+			client.log(Level.SEVERE, "Error while closing the file " + transfer.fileName, e);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import fr.umlv.chathack.client.core.ChatHackClient;
 import fr.umlv.chathack.client.core.UserInput;
@@ -11,10 +12,16 @@ import fr.umlv.chathack.client.core.UserInput;
 public class Main {
 	
 	private static void usage() {
-		System.out.println("Usage : ChatHackClient ipAdress port directory login [password]");
+		System.out.println("Usage : ChatHackClient ipAdress port directory login [password] [--envelope]");
+		System.out.println("  --envelope : asks the server for the envelope of the protocol v2, for servers supporting it");
 	}
 
 	public static void main(String[] args) throws IOException {
+		var envelope = args.length > 0 && args[args.length - 1].equals("--envelope");
+		if ( envelope ) {
+			args = Arrays.copyOf(args, args.length - 1);
+		}
+		
 		if ( args.length != 4 && args.length != 5 ) {
 			usage();
 			return;
@@ -34,6 +41,9 @@ public class Main {
 		
 		ChatHackClient client = args.length == 4 ? new ChatHackClient(new InetSocketAddress(args[0], Integer.parseInt(args[1])), Paths.get(args[2]), args[3])
 												 : new ChatHackClient(new InetSocketAddress(args[0], Integer.parseInt(args[1])), Paths.get(args[2]), args[3], args[4]);
+		if ( envelope ) {
+			client.askForEnvelope();
+		}
 		client.launch();
 		
 		UserInput input = new UserInput(client);
@@ -31,6 +31,18 @@ public class Parser {
 				String[] sequences = line.split(" ", 2);
 				String recipientClient = sequences[0].substring(1);
 				String fileName = sequences[1];
+				int stripes = 1;
+				
+				// '/login:n file' sends the file on n data connections.
+				int separator = recipientClient.lastIndexOf(':');
+				if ( separator != -1 ) {
+					try {
+						stripes = Integer.parseInt(recipientClient.substring(separator + 1));
+					} catch (NumberFormatException e) {
+						throw new MalFormedFrameException("The number of connections must be an integer.");
+					}
+					recipientClient = recipientClient.substring(0, separator);
+				}
 				
 				if ( recipientClient.isBlank() ) {
 					throw new MalFormedFrameException("Recipient client's login can not be blank.");
@@ -38,7 +50,7 @@ public class Parser {
 					throw new MalFormedFrameException("You must enter a file name.");
 				}
 				
-				client.sendFile(fileName, recipientClient);
+				client.sendFile(fileName, recipientClient, stripes);
 			} else {
 				if ( line.isBlank() ) {
 					throw new MalFormedFrameException("Messages can not be blank.");
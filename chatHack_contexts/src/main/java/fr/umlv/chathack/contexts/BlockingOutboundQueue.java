@@ -0,0 +1,91 @@
+package fr.umlv.chathack.contexts;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import fr.umlv.chathack.resources.frames.Frame;
+
+/**
+ * Outbound queue of a channel in blocking mode.</br>
+ * Such a channel has no mailbox : the frames are added and shed from any thread,
+ * while the thread writing the channel waits in take() for the next one.
+ */
+class BlockingOutboundQueue extends OutboundQueue {
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+
+	/**
+	 * Constructor of a blocking outbound queue.
+	 *
+	 * @param controlWeight The number of bytes the control lane can send for each byte of the bulk lane
+	 * when both lanes have frames waiting.
+	 */
+	BlockingOutboundQueue(int controlWeight) {
+		super(controlWeight);
+
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+	}
+
+	@Override
+	void add(Frame frame) {
+		lock.lock();
+		try {
+			super.add(frame);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	Frame poll() {
+		lock.lock();
+		try {
+			return super.poll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieves and removes the next frame to send, according to the weights of the lanes,
+	 * waiting for a frame to be added if both lanes are empty.
+	 *
+	 * @return The next frame.
+	 *
+	 * @throws InterruptedException If the current thread is interrupted while waiting.
+	 */
+	Frame take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while ( super.isEmpty() ) {
+				notEmpty.await();
+			}
+			return super.poll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	Frame removeOldest(Predicate<Frame> filter) {
+		lock.lock();
+		try {
+			return super.removeOldest(filter);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	boolean isEmpty() {
+		lock.lock();
+		try {
+			return super.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
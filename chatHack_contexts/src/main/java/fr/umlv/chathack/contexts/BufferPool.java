@@ -0,0 +1,175 @@
+package fr.umlv.chathack.contexts;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of direct buffers of the same capacity, shared by the connections of a process.</br>
+ * The buffers are cut from large direct slabs, allocated when the pool is empty.
+ * A connection borrows its buffers while bytes are in flight and gives them back once idle,
+ * so an idle connection does not hold any buffer.</br>
+ * </br>
+ * Each platform thread, such as a reactor, keeps its own free buffers, borrowed and given back
+ * without synchronization. Above buffersPerSlab of them, the buffers given back go to a free list shared
+ * by the threads, lock-free, from which the threads whose own list is empty borrow before allocating a new slab.
+ * Virtual threads only use the shared list. Above maxFree buffers, the shared list does not keep the buffers
+ * given back anymore : a slab is freed once none of its buffers is kept, so that the pool shrinks after a burst.</br>
+ * </br>
+ * The pool can be used from any thread.
+ */
+public class BufferPool {
+	private static final int BUFFERS_PER_SLAB = 64;
+	private static final int FILE_BUFFERS_PER_SLAB = 4;
+	private static final int MAX_FREE_SLABS = 16; // Free buffers kept by the shared list, in slabs.
+
+	/**
+	 * The pool of the buffers used by the contexts to read and write frames.
+	 */
+	public static final BufferPool SHARED = new BufferPool(Server.BUFFER_SIZE, BUFFERS_PER_SLAB);
+
+	/**
+	 * The pool of the buffers used by the private connections of the clients, each holding a whole file chunk.
+	 */
+	public static final BufferPool FILES = new BufferPool(Client.FILE_BUFFER_SIZE, FILE_BUFFERS_PER_SLAB);
+
+	private final int bufferSize;
+	private final int buffersPerSlab;
+	private final int maxFree;
+
+	private final ThreadLocal<ArrayDeque<ByteBuffer>> local; // Free buffers of the current platform thread, at most buffersPerSlab.
+	private final ConcurrentLinkedQueue<ByteBuffer> shared;
+	private final AtomicInteger sharedFree; // Size of shared, whose size() is not constant-time.
+
+	private final LongAdder allocated; // Buffers cut from the slabs and not dropped yet.
+	private final LongAdder borrowed;
+
+	/**
+	 * Constructor of a buffer pool.
+	 *
+	 * @param bufferSize The capacity of the buffers, in bytes.
+	 * @param buffersPerSlab The number of buffers cut from each slab.
+	 */
+	public BufferPool(int bufferSize, int buffersPerSlab) {
+		if ( bufferSize <= 0 || buffersPerSlab <= 0 ) {
+			throw new IllegalArgumentException("The size of the buffers and of the slabs must be positive");
+		}
+
+		this.bufferSize = bufferSize;
+		this.buffersPerSlab = buffersPerSlab;
+		this.maxFree = MAX_FREE_SLABS * buffersPerSlab;
+
+		this.local = ThreadLocal.withInitial(() -> new ArrayDeque<>(buffersPerSlab));
+		this.shared = new ConcurrentLinkedQueue<>();
+		this.sharedFree = new AtomicInteger();
+
+		this.allocated = new LongAdder();
+		this.borrowed = new LongAdder();
+	}
+
+	/**
+	 * Borrows a buffer from the pool, allocating a new slab if no buffer is free.
+	 *
+	 * @return An empty buffer, in write-mode.
+	 */
+	public ByteBuffer acquire() {
+		var free = localFree();
+
+		var buffer = Objects.isNull(free) ? null : free.poll();
+		if ( Objects.isNull(buffer) ) {
+			buffer = shared.poll();
+			if ( !Objects.isNull(buffer) ) {
+				sharedFree.decrementAndGet();
+			} else {
+				buffer = allocateSlab(free);
+			}
+		}
+
+		borrowed.increment();
+		return buffer;
+	}
+
+	/**
+	 * Gives back a buffer borrowed from the pool.</br>
+	 * The buffer must not be used anymore by the caller.
+	 *
+	 * @param buffer The buffer to give back.
+	 */
+	public void release(ByteBuffer buffer) {
+		if ( Objects.requireNonNull(buffer).capacity() != bufferSize || !buffer.isDirect() ) {
+			throw new IllegalArgumentException("The buffer does not come from this pool");
+		}
+
+		borrowed.decrement();
+		buffer.clear();
+
+		var free = localFree();
+		if ( !Objects.isNull(free) && free.size() < buffersPerSlab ) {
+			free.push(buffer);
+		} else if ( sharedFree.incrementAndGet() <= maxFree ) {
+			shared.add(buffer);
+		} else {
+			sharedFree.decrementAndGet();
+			allocated.decrement(); // Dropped, its slab is freed once none of its buffers is kept.
+		}
+	}
+
+	/**
+	 * Retrieves the free buffers of the current thread.
+	 *
+	 * @return The free buffers, or null if the current thread is virtual.
+	 */
+	private ArrayDeque<ByteBuffer> localFree() {
+		// A virtual thread serves a single connection and does not live long, its buffers would be lost.
+		return Thread.currentThread().isVirtual() ? null : local.get();
+	}
+
+	/**
+	 * Allocates a direct slab and cuts it in buffers.
+	 *
+	 * @param free The free buffers of the current thread, which receive the buffers of the slab,
+	 * or null if they go to the shared list.
+	 *
+	 * @return One of the buffers of the slab.
+	 */
+	private ByteBuffer allocateSlab(ArrayDeque<ByteBuffer> free) {
+		var slab = ByteBuffer.allocateDirect(bufferSize * buffersPerSlab);
+		allocated.add(buffersPerSlab);
+
+		for (var i = 1; i < buffersPerSlab; i++) {
+			var buffer = slab.slice(i * bufferSize, bufferSize);
+			if ( !Objects.isNull(free) ) {
+				free.push(buffer);
+			} else {
+				sharedFree.incrementAndGet();
+				shared.add(buffer);
+			}
+		}
+		return slab.slice(0, bufferSize);
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Retrieves the number of buffers allocated by the pool, borrowed or not.
+	 *
+	 * @return The number of buffers.
+	 */
+	public int getAllocatedBuffers() {
+		return allocated.intValue();
+	}
+
+	/**
+	 * Retrieves the number of buffers currently borrowed.
+	 *
+	 * @return The number of buffers.
+	 */
+	public int getBorrowedBuffers() {
+		return borrowed.intValue();
+	}
+}
@@ -1,12 +1,16 @@
 package fr.umlv.chathack.contexts;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
 import java.util.logging.Level;
 
+import fr.umlv.chathack.resources.frames.DlFileFrame;
+
 public interface Client {
 	static final int BUFFER_SIZE = 2048;
+	static final int FILE_BUFFER_SIZE = DlFileFrame.MAX_CHUNK_SIZE + 64; // A whole file chunk and the header of its frame.
 
 	/**
 	 * Log a message.
@@ -62,6 +66,14 @@ public interface Client {
      */
     void tryAuthenticate(int id, String login, ClientContext ctx);
     
+    /**
+     * Removes the given client from the private clients list, its connection having been closed.<br>
+     * Does nothing if the connection was not a private communication.
+     * 
+     * @param ctx The client Context whose connection has been closed.
+     */
+    void removePrivateClient(ClientContext ctx);
+    
     /**
      * Add the given client to the "Asking clients list".<br>
      * Clients in this list can not receive private message until this
@@ -73,12 +85,54 @@ public interface Client {
     void addAskingClient(String login, ClientContext ctx);
     
     /**
-     * Create a new file with the given name, and return a stream
-     * in which it's possible to write content.
+     * Create a new file with the given name, and return a channel
+     * in which it's possible to write content.<br>
+     * If a file with this name already exists, a number is added to the name.
+     * 
+     * @param fileName The file name.
+     * 
+     * @return A new channel opened for writing.
+     * 
+     * @throws IOException If the file can not be created.
+     */
+    FileChannel createNewFile(String fileName) throws IOException;
+    
+    /**
+     * Retrieves the stage writing the received files on the disk, off the thread selecting the keys.
+     * 
+     * @return The disk writer of this client.
+     */
+    DiskWriter getDiskWriter();
+    
+    /**
+     * Opens data connections to the private server of another client
+     * and downloads on each of them a range of the given file.<br>
+     * If a download of the same file from the same client has been interrupted, it is resumed
+     * in the same file : the ranges not downloaded yet are asked for again, from the bytes already written.
      * 
+     * @param server The private server of the sender.
+     * @param login The login of the sender.
      * @param fileName The file name.
+     * @param fileSize The full size of the file.
+     * @param fileID The file identifier given by the sender.
+     * @param tokenID The token ID of the private communication with the sender.
+     * @param stripes The number of data connections asked for by the sender.
+     * 
+     * @throws IOException
+     */
+    void startDownload(InetSocketAddress server, String login, String fileName, long fileSize, int fileID, int tokenID, int stripes) throws IOException;
+    
+    /**
+     * Attaches to the given key the upload of a range of the file offered to the given client, which asked for it.<br>
+     * Closes the connection if no such file has been offered to the client.
      * 
-     * @return A new stream opened for writing.
+     * @param login The login of the client asking for the file.
+     * @param tokenID The token ID of the private communication with the client.
+     * @param fileID The file identifier.
+     * @param position The position in the file of the first byte to send.
+     * @param length The number of bytes to send.
+     * @param stripes The number of data connections opened by the client for the file.
+     * @param key The key of the data connection opened by the client.
      */
-    FileOutputStream createNewFile(String fileName);
+    void startUpload(String login, int tokenID, int fileID, long position, long length, int stripes, SelectionKey key);
 }
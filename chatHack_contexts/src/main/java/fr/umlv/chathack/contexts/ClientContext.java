@@ -3,58 +3,71 @@ package fr.umlv.chathack.contexts;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
-import fr.umlv.chathack.contexts.FileContext.State;
 import fr.umlv.chathack.resources.frames.ClientVisitor;
+import fr.umlv.chathack.resources.frames.DlFileFrame;
 import fr.umlv.chathack.resources.frames.Frame;
+import fr.umlv.chathack.resources.frames.PrivateAuthAnswerFrame;
+import fr.umlv.chathack.resources.frames.PrivateAuthCliFrame;
+import fr.umlv.chathack.resources.frames.PublicFragmentFromCliFrame;
 import fr.umlv.chathack.resources.readers.FrameReader;
 import fr.umlv.chathack.resources.readers.Reader;
 
 public class ClientContext extends Context implements ClientVisitor {
+	// The bytes held by the incomplete public messages of a connection.
+	private static final int MAX_FRAGMENTED_BYTES = 4 * PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE;
+	
+	/**
+	 * The largest file chunks sent and received on a private connection, held whole by the buffers of BufferPool.FILES.
+	 */
+	public static final int MAX_CHUNK_SIZE = DlFileFrame.MAX_CHUNK_SIZE;
+	
     final private Client client;
     final private Map<Integer, FileContext> files;
-    
-	private final ReentrantLock lock;
-	private final Condition isQueueEmptyCondition;
+    final private FragmentAssembler fragments;
     
     private String login; // The client login, may be null.
     private int tokenID; // The ID used to communicate the client, -1 if not assigned.
+    private int chunkSize; // The size of the file chunks sent to the client.
+    private int offeredChunkSize; // The largest chunk size offered to the private server, 0 if no answer is expected.
+    private int pendingBytes; // Bytes of the received chunks waiting for the disk.
+    private boolean connectionAnswered; // True once the server answered the connection request, on the public connection.
 	
-    public ClientContext(SelectionKey key, Client client) {
-    	this(key, client, FrameReader.class);
+    public ClientContext(SelectionKey key, Mailbox mailbox, Client client) {
+    	this(key, mailbox, client, FrameReader.class);
     }
     
-    public <T extends Reader> ClientContext(SelectionKey key, Client client, Class<T> reader) {
-    	super(key, reader);
+    public <T extends Reader> ClientContext(SelectionKey key, Mailbox mailbox, Client client, Class<T> reader) {
+    	this(key, mailbox, client, reader, BufferPool.SHARED);
+    }
+    
+    /**
+     * Constructor of the context of a private connection, whose buffers hold whole file chunks.
+     * 
+     * @param key The key of the channel, registered to a selector.
+     * @param mailbox The mailbox of the thread selecting the key.
+     * @param client The client owning the connection.
+     * @param pool The pool of the input and output buffers.
+     */
+    public ClientContext(SelectionKey key, Mailbox mailbox, Client client, BufferPool pool) {
+    	this(key, mailbox, client, FrameReader.class, pool);
+    }
+    
+    private <T extends Reader> ClientContext(SelectionKey key, Mailbox mailbox, Client client, Class<T> reader, BufferPool pool) {
+    	super(key, mailbox, reader, pool);
     	
         this.client = client;
         this.files = new HashMap<>();
-        
-        this.lock = new ReentrantLock();
-        this.isQueueEmptyCondition = lock.newCondition();
+        this.fragments = new FragmentAssembler(MAX_FRAGMENTED_BYTES);
         
         this.login = null;
         this.tokenID = -1;
-    }
-    
-    @Override
-    protected void processOut() {
-    	super.processOut();
-    	
-		lock.lock();
-		try {
-			if ( getQueueSize() == 0 ) {
-				isQueueEmptyCondition.signal();
-			}
-		} finally {
-			lock.unlock();
-		}
+        this.chunkSize = DlFileFrame.DEFAULT_CHUNK_SIZE;
     }
     
     /**
@@ -109,6 +122,52 @@ public class ClientContext extends Context implements ClientVisitor {
     	return tokenID;
     }
     
+    /**
+     * Set the size of the file chunks sent to the client, agreed on when authenticating the private connection.
+     * 
+     * @param chunkSize The size of the chunks, in bytes.
+     * 
+     * @throws IllegalArgumentException If the size is not between 1 and MAX_CHUNK_SIZE.
+     */
+    private void setChunkSize(int chunkSize) {
+    	if ( chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE ) {
+    		throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+    	}
+    	
+    	this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Authenticates this client to the private server it connected to, offering MAX_CHUNK_SIZE as the size of the file chunks.<br>
+     * The chunks keep their default size until the server answers with the size agreed on.
+     * 
+     * @param login The login of this client.
+     */
+    public void authenticateToPrivateServer(String login) {
+    	offeredChunkSize = MAX_CHUNK_SIZE;
+    	queueMessage(new PrivateAuthCliFrame(Objects.requireNonNull(login), getTokenId(), offeredChunkSize));
+    }
+    
+    /**
+     * Retrieve the size of the file chunks sent to the client.
+     * 
+     * @return The size of the chunks, in bytes.
+     */
+    public int getChunkSize() {
+    	return chunkSize;
+    }
+    
+    /**
+     * Determines if the server answered the connection request sent on this connection.<br>
+     * No other frame can be sent to the public server before, since the frames following
+     * the answer are enveloped if the server accepted the envelope of the protocol v2.
+     * 
+     * @return True if the connection request has been answered.
+     */
+    public boolean isConnectionAnswered() {
+    	return connectionAnswered;
+    }
+    
     /**
      * Determines if this client is authenticated as a private client.
      * In other words if this client is part of the private clients list,
@@ -120,23 +179,16 @@ public class ClientContext extends Context implements ClientVisitor {
     	return !Objects.isNull(login) && tokenID != -1;
     }
     
-	/**
-	 * Retrieves the lock's Condition isQueueEmpty.
-	 * 
-	 * @return The lock's Condition isQueueEmpty.
-	 */
-	public Condition getIsQueueEmptyCondition() {
-		return isQueueEmptyCondition;
-	}
-
-	/**
-	 * Retrieves the ReentrantLock lock.
-	 * 
-	 * @return The lock.
-	 */
-	public ReentrantLock getLock() {
-		return lock;
-	}
+    @Override
+    protected void connectionClosed() {
+    	/* The files downloaded by chunks are not resumed, they are sent again entirely */
+    	for (var file : files.values()) {
+    		closeFile(file);
+    	}
+    	files.clear();
+    	
+    	client.removePrivateClient(this);
+    }
     
     @Override
     protected void acceptFrame(Frame frame) throws IOException {
@@ -158,14 +210,62 @@ public class ClientContext extends Context implements ClientVisitor {
 		client.clearPendingFiles(Objects.requireNonNull(login));
 	}
 
+	@Override
+	public void connectionAnswered(boolean enveloped) {
+		if ( enveloped ) {
+			readEnveloped();
+			sendEnveloped();
+		}
+		connectionAnswered = true;
+	}
+
 	@Override
 	public void connectToPrivateServer(InetSocketAddress server, String login, int tokenID) throws IOException {
 		client.connectToPrivateServer(Objects.requireNonNull(server), Objects.requireNonNull(login), tokenID);
 	}
 
 	@Override
-	public void tryAuthenticate(int id, String login) {
+	public void tryAuthenticate(int id, String login, int chunkSize) {
+		if ( chunkSize <= 0 ) {
+			log(Level.WARNING, "Someone tried to authenticate with an invalid chunk size " + chunkSize);
+			queueMessage(new PrivateAuthAnswerFrame());
+			return;
+		}
+		
 		client.tryAuthenticate(id, Objects.requireNonNull(login), this);
+		if ( !isPrivateAuthenticated() ) {
+			queueMessage(new PrivateAuthAnswerFrame());
+			return;
+		}
+		
+		/* Both clients send their file chunks with the largest size both accept, told to the client connecting */
+		setChunkSize(Math.min(chunkSize, MAX_CHUNK_SIZE));
+		queueMessage(new PrivateAuthAnswerFrame(this.chunkSize));
+	}
+	
+	@Override
+	public void privateAuthAnswered(boolean accepted, int chunkSize) {
+		var offeredChunkSize = this.offeredChunkSize;
+		if ( offeredChunkSize == 0 ) {
+			log(Level.WARNING, "Unexpected answer to a private authentication");
+			return;
+		}
+		this.offeredChunkSize = 0; // Answered.
+		
+		if ( !accepted ) {
+			System.out.println("The private connection with " + login + " has been refused");
+			log(Level.WARNING, "Private authentication refused by " + login);
+			closeLater();
+			return;
+		}
+		
+		if ( chunkSize <= 0 || chunkSize > offeredChunkSize ) {
+			log(Level.WARNING, login + " agreed on the invalid chunk size " + chunkSize + ", the private connection is closed");
+			closeLater();
+			return;
+		}
+		
+		setChunkSize(chunkSize);
 	}
 	
 	@Override
@@ -185,22 +285,59 @@ public class ClientContext extends Context implements ClientVisitor {
 	}
 	
 	@Override
-	public void initFileDownload(String fileName, int fileSize, int fileID) {
+	public void initFileDownload(String fileName, long fileSize, int fileID, int dataPort, int stripes) {
 		if ( !isPrivateAuthenticated() ) {
 			// This client is not authenticated, do nothing.
 			return;
 		}
 		
-		if ( files.containsKey(fileID) ) {
+		if ( fileSize <= 0 ) {
+			log(Level.WARNING, login + " announced the file " + fileName + " with the invalid size " + fileSize);
+			return;
+		}
+		
+		if ( stripes <= 0 || stripes > StripedFile.MAX_STRIPES ) {
+			log(Level.WARNING, login + " announced the file " + fileName + " on an invalid number of connections " + stripes);
+			return;
+		}
+		
+		if ( dataPort != 0 ) {
+			try {
+				var server = new InetSocketAddress(getRemoteAddress().getAddress(), dataPort);
+				client.startDownload(server, login, Objects.requireNonNull(fileName), fileSize, fileID, tokenID, stripes);
+				
+				System.out.println("Starting downloading file " + fileName + "...");
+				log(Level.INFO, "Downloading file " + fileName + " of size " + fileSize + " and ID " + fileID + " from " + server + ".");
+			} catch (IOException e) {
+				log(Level.SEVERE, "Impossible to open the data connection of the file " + fileName, e);
+			}
+		} else if ( files.containsKey(fileID) ) {
 			log(Level.INFO, "The file (ID : " + fileID + ") is already downloading.");
 		} else {
-			files.put(fileID, new FileContext(fileSize, fileName, client.createNewFile(fileName)));
+			try {
+				files.put(fileID, new FileContext(fileSize, fileName, client.createNewFile(Objects.requireNonNull(fileName)), client.getDiskWriter()));
+			} catch (IOException e) {
+				System.err.println("Impossible to create the file " + fileName + ", it will not be downloaded.");
+				log(Level.SEVERE, "Impossible to create the file " + fileName + " (ID : " + fileID + ")", e);
+				return;
+			}
 			
 			System.out.println("Starting downloading file " + fileName + "...");
 			log(Level.INFO, "Downloading file " + fileName + " of size " + fileSize + " and ID " + fileID + ".");
 		}
 	}
 	
+	@Override
+	public void uploadFile(String login, int tokenID, int fileID, long position, long length, int stripes) {
+		if ( isPrivateAuthenticated() ) {
+			// The files are only sent on data connections, never on the private connection itself.
+			log(Level.WARNING, "A file has been asked for on the private connection with " + this.login);
+			return;
+		}
+		
+		client.startUpload(Objects.requireNonNull(login), tokenID, fileID, position, length, stripes, handOver());
+	}
+	
 	@Override
 	public void downloadFile(int fileID, byte[] data) {
 		if ( !isPrivateAuthenticated() ) {
@@ -215,22 +352,90 @@ public class ClientContext extends Context implements ClientVisitor {
 		
 		var file = files.get(fileID);
 		
-		if ( file.state() == State.REFILL ) {
-			file.fillBuffer(data);
+		try {
+			file.write(data, error -> written(fileID, file, data.length, error));
+		} catch (IOException e) {
+			failed(fileID, file, e);
+			return;
 		}
 		
-		if ( file.state() == State.FULL ) {
-			try {
-				if ( !file.flush() ) {
-					// File is fully downloaded.
-					files.remove(fileID);
-					System.out.println("Download of file " + file.getFileName() + " complete.");
-					log(Level.INFO, "Download of file with ID " + fileID + " and name " + file.getFileName() + " complete.");
-				}
-			} catch (Exception e) {
-				files.remove(fileID);
-				log(Level.SEVERE, "Error while flushing the buffer into the file " + file.getFileName(), e);
-			}
+		/* The peer is slowed down while the disk is behind */
+		pendingBytes += data.length;
+		if ( pendingBytes >= DiskWriter.MAX_PENDING_BYTES ) {
+			suspendReading();
+		}
+	}
+	
+	/**
+	 * Called once a chunk has been written by the disk writer.
+	 * 
+	 * @param fileID The file identifier.
+	 * @param file The file.
+	 * @param size The size of the chunk.
+	 * @param error The error if the chunk could not be written, null otherwise.
+	 */
+	private void written(int fileID, FileContext file, int size, IOException error) {
+		pendingBytes -= size;
+		if ( pendingBytes < DiskWriter.RESUME_PENDING_BYTES ) {
+			resumeReading();
+		}
+		
+		if ( files.get(fileID) != file ) {
+			return; // The download has already failed.
+		}
+		
+		if ( !Objects.isNull(error) ) {
+			failed(fileID, file, error);
+		} else if ( file.isComplete() ) {
+			// File is fully downloaded.
+			files.remove(fileID);
+			closeFile(file);
+			System.out.println("Download of file " + file.getFileName() + " complete.");
+			log(Level.INFO, "Download of file with ID " + fileID + " and name " + file.getFileName() + " complete.");
+		}
+	}
+	
+	/**
+	 * Gives up the download of a file.
+	 * 
+	 * @param fileID The file identifier.
+	 * @param file The file.
+	 * @param e The error.
+	 */
+	private void failed(int fileID, FileContext file, IOException e) {
+		files.remove(fileID);
+		log(Level.SEVERE, "Error while writing into the file " + file.getFileName(), e);
+		closeFile(file);
+	}
+	
+	/**
+	 * Closes a file.<br>
+	 * It does not throw exception if an I/O error occurs.
+	 * 
+	 * @param file The file.
+	 */
+	private void closeFile(FileContext file) {
+		try {
+			file.close();
+		} catch (IOException e) {
+			log(Level.SEVERE, "Error while closing the file " + file.getFileName(), e);
+		}
+	}
+	
+	@Override
+	public void receivePublicFragment(String sender, int sequence, boolean continued, byte[] chunk) {
+		byte[] message;
+		
+		try {
+			message = fragments.add(Objects.requireNonNull(sender), sequence, continued, Objects.requireNonNull(chunk));
+		} catch (IllegalStateException e) {
+			log(Level.WARNING, e.getMessage());
+			return;
+		}
+		
+		if ( !Objects.isNull(message) ) {
+			System.out.println("From " + sender + " to everyone :");
+			System.out.println(new String(message, StandardCharsets.UTF_8));
 		}
 	}
 }
@@ -5,77 +5,121 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.Comparator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
-import fr.umlv.chathack.resources.frames.DlFileFrame;
 import fr.umlv.chathack.resources.frames.Frame;
+import fr.umlv.chathack.resources.frames.FrameEncoder;
 import fr.umlv.chathack.resources.frames.InfoFrame;
 import fr.umlv.chathack.resources.readers.FrameReader;
 import fr.umlv.chathack.resources.readers.Reader;
 
 public abstract class Context {
-    final private SelectionKey key;
+	private static final int CONTROL_WEIGHT = 3; // Under contention, file chunks keep 1/4 of the bandwidth.
+	private static final int GATHERED_BYTES = 16 * Server.BUFFER_SIZE; // Bytes sent by a single write, at least two buffers.
+	
+    final private SelectionKey key; // Null if the channel is in blocking mode.
     final private SocketChannel sc;
+    final private Mailbox mailbox; // Null if the channel is in blocking mode.
 	
-    final private ByteBuffer bbin;
-    final private ByteBuffer bbout;
-    final private Queue<Frame> queue;
-    final private Reader freader;
+    final private BufferPool pool;
+    private ByteBuffer bbin; // Borrowed from the pool while a frame is being received, null when idle.
+    final private ByteBuffer[] bbouts; // Output buffers sent by a single gathering write, borrowed from the pool while bytes are waiting.
+    private int bboutCount; // Number of buffers of bbouts holding bytes to send, the last one is being filled.
+    final private OutboundQueue queue; // Only used by the thread selecting the key, unless the channel is in blocking mode.
+    final private Reader freader; // Not bound to bbin, it keeps the beginning of a frame while bbin is released.
+    final private AtomicInteger pendingFrames; // Frames queued, possibly from another thread, and not yet put in bbouts.
+    final private AtomicLong queuedBytes; // Size of the frames counted by pendingFrames.
+    final private AtomicLong postedBytes; // Size of the frames posted to the mailbox, counted by queuedBytes but not in the queue yet.
+    private Frame pendingOut; // Frame taken from the queue by the writing thread, not entirely written in bbouts yet.
+    private int pendingOutOffset; // Number of bytes of pendingOut already written in bbouts.
+    private boolean pendingOutEnveloped; // True if pendingOut is written with the envelope of the protocol v2.
+    
+    private boolean readEnveloped; // True once the frames are read with the envelope of the protocol v2.
+    private boolean sendEnveloped; // True once the frames are sent with the envelope, only used by the writing thread.
+    private volatile Frame envelopeAfter; // Frame after which the frames are sent with the envelope, null if none.
+    private volatile boolean readEnvelopedNext; // True if the frames received next are read with the envelope.
+    
+    private volatile OutboundBudget budget; // Null if the queued bytes are not bounded.
+    private volatile boolean overBudget;
+    private volatile long overBudgetSince; // Time at which the budget has been exceeded, in nanoseconds.
+    final private AtomicBoolean overflowClosed; // True once the connection has been closed by the budget policy.
+    final private AtomicLong droppedFrames; // Frames shed by the budget policy.
+    final private AtomicLong droppedBytes;
     
     private boolean closed;
+    final private AtomicBoolean closeNotified; // True once connectionClosed() has been called.
+    private volatile Runnable closeHook; // Run once the connection is closed, null if none has been installed.
+    private boolean handedOver; // True once the channel is used by another attachment of the key.
+    private boolean readingSuspended; // True while the received frames can not be handled, the channel is then not read.
+    
+    public Context(SelectionKey key, Mailbox mailbox) {
+    	this(key, mailbox, FrameReader.class);
+    }
     
-    public Context(SelectionKey key) {
-    	this(key, FrameReader.class);
+    public <T extends Reader> Context(SelectionKey key, Mailbox mailbox, Class<T> reader) {
+    	this(key, mailbox, reader, BufferPool.SHARED);
     }
     
-    public <T extends Reader> Context(SelectionKey key, Class<T> reader) {
+    /**
+     * Constructor of a context borrowing its buffers from the given pool.</br>
+     * A connection carrying large frames, such as file chunks, reads and writes each of them
+     * in fewer system calls with larger buffers.
+     * 
+     * @param key The key of the channel, registered to a selector.
+     * @param mailbox The mailbox of the thread selecting the key.
+     * @param reader The class of the reader used to read the frames.
+     * @param pool The pool of the input and output buffers.
+     */
+    public <T extends Reader> Context(SelectionKey key, Mailbox mailbox, Class<T> reader, BufferPool pool) {
+    	this((SocketChannel) key.channel(), key, Objects.requireNonNull(mailbox), reader, Objects.requireNonNull(pool));
+    }
+    
+    /**
+     * Constructor of a context whose channel is in blocking mode.</br>
+     * Such a context is not registered to a selector : a thread reads the channel with
+     * doBlockingRead() while another one writes the queued frames with doBlockingWrite().
+     * Frames can be queued from any thread.
+     * 
+     * @param sc The channel, in blocking mode.
+     * @param reader The class of the reader used to read the frames.
+     */
+    public <T extends Reader> Context(SocketChannel sc, Class<T> reader) {
+    	this(Objects.requireNonNull(sc), null, null, reader, BufferPool.SHARED);
+    }
+    
+    private <T extends Reader> Context(SocketChannel sc, SelectionKey key, Mailbox mailbox, Class<T> reader, BufferPool pool) {
         this.key = key;
-        this.sc = (SocketChannel) key.channel();
+        this.sc = sc;
+        this.mailbox = mailbox;
         
-        this.bbin = ByteBuffer.allocate(Server.BUFFER_SIZE);
-        this.bbout = ByteBuffer.allocate(Server.BUFFER_SIZE);
-        this.queue = new PriorityBlockingQueue<Frame>(512, frameComparator());
+        this.pool = pool;
+        this.bbin = null;
+        this.bbouts = new ByteBuffer[Math.max(2, GATHERED_BYTES / pool.getBufferSize())];
+        this.bboutCount = 1;
+        this.queue = Objects.isNull(key) ? new BlockingOutboundQueue(CONTROL_WEIGHT) : new OutboundQueue(CONTROL_WEIGHT);
         
         Reader tmpReader = null;
         try {
-        	tmpReader = reader.getConstructor(ByteBuffer.class).newInstance(bbin);
+        	tmpReader = reader.getConstructor().newInstance();
 		} catch (Exception e) {
 			log(Level.SEVERE, "Error while instanciating the frame reader", e);
 			throw new IllegalArgumentException("The provided Reader class could not be loaded");
 		}
         this.freader = tmpReader;
+        this.pendingFrames = new AtomicInteger();
+        this.queuedBytes = new AtomicLong();
+        this.postedBytes = new AtomicLong();
+        
+        this.overflowClosed = new AtomicBoolean(false);
+        this.droppedFrames = new AtomicLong();
+        this.droppedBytes = new AtomicLong();
         
         this.closed = false;
-    }
-    
-    /**
-     * Makes and returns a frame comparator which compare 2 types of frame :</br>
-     * Download Frame and not Download Frame.</br>
-     * This comparator make the Download Frames less important than others frames,
-     * in order to send faster messages.</br>
-     * To conserve order in 2 Download Frames, the one which has been created first
-     * will be sent first.
-     * 
-     * @return A frame comparator, making Download Frames less important.
-     */
-    private Comparator<Frame> frameComparator() {
-    	return new Comparator<Frame>() {
-
-			@Override
-			public int compare(Frame f1, Frame f2) {
-				if ( (f1 instanceof DlFileFrame) && !(f2 instanceof DlFileFrame) ) {
-					return -1;
-				} else if ( !(f1 instanceof DlFileFrame) && (f2 instanceof DlFileFrame) ) {
-					return 1;
-				}
-				
-				return (int) (f1.getCreationTime() - f2.getCreationTime());
-			}
-    		
-    	};
+        this.closeNotified = new AtomicBoolean(false);
     }
     
     /**
@@ -91,24 +135,25 @@ public abstract class Context {
     private void updateInterestOps() {
         int newInterestOps = 0;
         
-        if ( bbin.hasRemaining() && !closed ) {
+        if ( (Objects.isNull(bbin) || bbin.hasRemaining()) && !closed && !readingSuspended ) {
         	newInterestOps |= SelectionKey.OP_READ;
         }
         
-        if ( (bbout.position() > 0 || !queue.isEmpty()) && !closed ) {
+        if ( ((!Objects.isNull(bbouts[0]) && bbouts[0].position() > 0) || !Objects.isNull(pendingOut) || !queue.isEmpty()) && !closed ) {
         	newInterestOps |= SelectionKey.OP_WRITE;
         }
             
-        if ( newInterestOps == 0 ) {
+        if ( newInterestOps == 0 && !readingSuspended ) {
             silentlyClose();
-        } else {
+        } else if ( key.isValid() ) {
             key.interestOps(newInterestOps);
         }
     }
     
     /**
      * Closes the connection with the socketChannel.<br>
-     * It does not throw exception if an I/O error occurs.
+     * It does not throw exception if an I/O error occurs.<br>
+     * connectionClosed() is called once, whatever the number of times the connection is closed.
      */
     private void silentlyClose() {
         try {
@@ -116,10 +161,30 @@ public abstract class Context {
         } catch (IOException e) {
         	log(Level.SEVERE, "Error while closing connection", e);
         }
+        
+        if ( closeNotified.compareAndSet(false, true) ) {
+        	connectionClosed();
+        	
+        	var closeHook = this.closeHook;
+        	if ( !Objects.isNull(closeHook) ) {
+        		closeHook.run();
+        	}
+        }
+    }
+    
+    /**
+     * Called once the connection has been closed, whatever the path closing it.<br>
+     * Does nothing by default.
+     */
+    protected void connectionClosed() {
+    	// Do nothing by default.
     }
     
     /**
      * Processes the content of bbin.<br>
+     * The frames are read one after the other behind the position of bbin, flipped once :
+     * the bytes following a frame are not moved when it is read, bbin is compacted once
+     * all the complete frames have been read.<br>
      *<br>
      * The convention is that bbin is in write-mode before the call
      * to process and after the call.
@@ -128,25 +193,37 @@ public abstract class Context {
      *
      */
     private void processIn() throws IOException {
-    	switch ( freader.process() ) {
-    		case DONE :
-    			Frame frame = (Frame) freader.get();
-    			freader.reset();
-    			log(Level.INFO, "Frame received : " + frame);
-    			
-    			acceptFrame(frame);
-    			
-    			if ( bbin.position() > 0 ) {
-    				processIn(); // We keep processing until there are bytes remaining in bbin.
-    			}
-    			break;
-    		case REFILL :
-    			break;
-    		case ERROR :
-    			queueMessage(new InfoFrame((byte) 1, "Invalid frame received, it has been ignored."));
-    			log(Level.WARNING, "Error while reading a frame ! Ignoring the frame.");
-    			freader.reset();
-    			break;
+    	bbin.flip();
+    	try {
+	    	while ( bbin.hasRemaining() ) {
+	    		if ( !readEnveloped && readEnvelopedNext ) {
+	    			readEnveloped();
+	    		}
+	    		switch ( freader.process(bbin) ) {
+	    			case DONE :
+	    				Frame frame = (Frame) freader.get();
+	    				freader.reset();
+	    				log(Level.INFO, "Frame received : " + frame);
+	    				
+	    				acceptFrame(frame);
+	    				if ( handedOver ) {
+	    					return; // The following bytes are not frames anymore.
+	    				}
+	    				break;
+	    			case REFILL :
+	    				return;
+	    			case ERROR :
+	    				queueMessage(new InfoFrame((byte) 1, "Invalid frame received, it has been ignored."));
+	    				log(Level.WARNING, "Error while reading a frame ! Ignoring the frame.");
+	    				freader.reset();
+	    				if ( !readEnveloped ) {
+	    					return; // The end of the frame is unknown, the following bytes can not be trusted.
+	    				}
+	    				break; // The frame has been skipped, the next one can be read.
+	    		}
+	    	}
+    	} finally {
+    		bbin.compact();
     	}
     }
     
@@ -159,23 +236,178 @@ public abstract class Context {
      * @throws IOException
      */
     public void doRead() throws IOException {
+    	if ( Objects.isNull(bbin) ) {
+    		borrowInput();
+    	}
+    	
         if ( sc.read(bbin) == -1 ) {
             closed = true;
         }
         
         processIn();
+        if ( handedOver ) {
+        	releaseInput();
+        	releaseOutput();
+        	return;
+        }
         updateInterestOps();
+        releaseBuffers();
+    }
+    
+    /**
+     * Borrows bbin from the pool.
+     */
+    private void borrowInput() {
+    	bbin = pool.acquire();
+    }
+    
+    /**
+     * Gives back bbin to the pool.<br>
+     * The bytes left in bbin are lost.
+     */
+    private void releaseInput() {
+    	if ( !Objects.isNull(bbin) ) {
+    		pool.release(bbin);
+    	}
+    	bbin = null;
+    }
+    
+    /**
+     * Gives back bbouts to the pool.<br>
+     * The bytes left in bbouts are lost.
+     */
+    private void releaseOutput() {
+    	for (var i = 0; i < bbouts.length && !Objects.isNull(bbouts[i]); i++) {
+    		pool.release(bbouts[i]);
+    		bbouts[i] = null;
+    	}
+    	bboutCount = 1;
+    }
+    
+    /**
+     * Gives back to the pool the buffers this context does not need :
+     * bbin if every byte received has been read and bbouts if no byte is waiting to be sent,
+     * or all of them once the connection is closed.<br>
+     * An idle connection then holds no buffer, they are borrowed again when bytes arrive
+     * or frames are queued.<br>
+     * <br>
+     * Must be called by the thread selecting the key, in particular after closing the channel.
+     */
+    public void releaseBuffers() {
+    	if ( !Objects.isNull(bbin) && (closed || !sc.isOpen() || bbin.position() == 0) ) {
+    		releaseInput();
+    	}
+    	
+    	if ( !Objects.isNull(bbouts[0]) && (!sc.isOpen() || (bboutCount == 1 && bbouts[0].position() == 0 && Objects.isNull(pendingOut))) ) {
+    		releaseOutput();
+    	}
     }
     
     /**
-     * Try to fill bbout from the message queue.
+     * Try to fill bbouts from the message queue.<br>
+     * The frames are serialized directly in the output buffers : a frame which does not fit in
+     * the space left in a buffer is continued in the next one, and the buffers are filled
+     * until all of them are full or the queue is empty.<br>
+     * The frames are polled one by one, so they can be removed from the queue
+     * by the budget policy until they are serialized.
      *
      */
     protected void processOut() {
-    	synchronized ( key ) {
-            while ( !queue.isEmpty() && bbout.remaining() >= queue.element().size() ) {
-                bbout.put(queue.remove().getBytes());
-            }
+        while ( true ) {
+        	if ( Objects.isNull(pendingOut) ) {
+        		startOut(queue.poll());
+        	}
+        	if ( Objects.isNull(pendingOut) ) {
+        		return;
+        	}
+        	if ( Objects.isNull(bbouts[0]) ) {
+        		bbouts[0] = pool.acquire();
+        	}
+        	
+        	var bbout = bbouts[bboutCount - 1];
+        	if ( !bbout.hasRemaining() ) {
+        		if ( bboutCount == bbouts.length ) {
+        			return; // Every buffer is full.
+        		}
+        		if ( Objects.isNull(bbouts[bboutCount]) ) {
+        			bbouts[bboutCount] = pool.acquire();
+        		}
+        		bboutCount++;
+        		continue;
+        	}
+        	
+        	var size = pendingOut.size();
+        	if ( pendingOutEnveloped ) {
+        		pendingOutOffset = FrameEncoder.writeEnveloped(pendingOut, bbout, pendingOutOffset);
+        	} else {
+        		pendingOutOffset = pendingOut.writeTo(bbout, pendingOutOffset);
+        	}
+        	if ( pendingOutOffset == (pendingOutEnveloped ? size + FrameEncoder.ENVELOPE_HEADER_SIZE : size) ) {
+        		dequeued(size);
+        		if ( pendingOut == envelopeAfter ) {
+        			sendEnveloped = true;
+        			envelopeAfter = null;
+        		}
+        		pendingOut = null;
+        	}
+        }
+    }
+    
+    /**
+     * Starts writing a frame taken from the queue in bbouts.<br>
+     * Whether it is enveloped is decided here, once it is the next frame sent :
+     * the frames of both lanes are sent with the envelope from the same frame on.
+     * 
+     * @param frame The frame, or null if the queue is empty.
+     */
+    private void startOut(Frame frame) {
+    	pendingOut = frame;
+    	pendingOutOffset = 0;
+    	pendingOutEnveloped = sendEnveloped;
+    }
+    
+    /**
+     * Writes the content of bbouts on sc with a single gathering write.<br>
+     * The buffers entirely sent are moved after the others and cleared,
+     * so the bytes left to send are always at the beginning of bbouts.<br>
+     * <br>
+     * The convention is that the buffers are in write-mode before the call
+     * to writeOut and after the call.
+     * 
+     * @throws IOException
+     */
+    private void writeOut() throws IOException {
+    	if ( Objects.isNull(bbouts[0]) ) {
+    		return; // Nothing has been queued since the buffers were released.
+    	}
+    	
+    	for (var i = 0; i < bboutCount; i++) {
+    		bbouts[i].flip();
+    	}
+    	
+    	sc.write(bbouts, 0, bboutCount);
+    	
+    	while ( bboutCount > 1 && !bbouts[0].hasRemaining() ) {
+    		var sent = bbouts[0];
+    		System.arraycopy(bbouts, 1, bbouts, 0, bboutCount - 1);
+    		bbouts[--bboutCount] = sent.clear();
+    	}
+    	for (var i = 0; i < bboutCount; i++) {
+    		bbouts[i].compact();
+    	}
+    }
+    
+    /**
+     * Updates the counters of the queue once a frame is not waiting to be sent anymore.
+     * 
+     * @param size The size of the frame, in bytes.
+     */
+    private void dequeued(int size) {
+    	pendingFrames.decrementAndGet();
+    	
+    	var budget = this.budget;
+    	if ( queuedBytes.addAndGet(-size) <= (Objects.isNull(budget) ? Long.MAX_VALUE : budget.getMaxBytes()) ) {
+    		overBudget = false;
     	}
     }
     
@@ -188,28 +420,404 @@ public abstract class Context {
      * @throws IOException
      */
     public void doWrite() throws IOException {
-    	synchronized ( key ) {
-            bbout.flip();
-            sc.write(bbout);
-            bbout.compact();
-    	}
+        writeOut();
         
         processOut();
         updateInterestOps();
+        releaseBuffers();
+    }
+    
+    /**
+     * Performs blocking reads on sc and processes the received frames,
+     * until the connection is closed by the remote or bbin is full.<br>
+     * bbin is borrowed from the pool for the whole connection, since the thread waits in sc.read().<br>
+     * <br>
+     * Must only be used if the channel is in blocking mode.
+     *
+     * @throws IOException
+     */
+    public void doBlockingRead() throws IOException {
+    	ensureBlocking();
+    	
+    	borrowInput();
+    	try {
+	        while ( bbin.hasRemaining() && sc.read(bbin) != -1 ) {
+	            processIn();
+	        }
+	        
+	        closed = true;
+    	} finally {
+    		releaseInput();
+    	}
+    }
+    
+    /**
+     * Waits for frames to be queued and writes them on sc,
+     * until the connection is closed or the current thread is interrupted.<br>
+     * The frames are written by gathering writes of up to GATHERED_BYTES bytes,
+     * borrowed from the pool and given back while waiting for a frame.<br>
+     * <br>
+     * Must only be used if the channel is in blocking mode.
+     *
+     * @throws IOException
+     * @throws InterruptedException If the current thread is interrupted while waiting for a frame.
+     */
+    public void doBlockingWrite() throws IOException, InterruptedException {
+    	ensureBlocking();
+    	
+    	try {
+	    	while ( sc.isOpen() ) {
+	    		if ( Objects.isNull(pendingOut) ) {
+	    			var frame = queue.poll();
+	    			if ( Objects.isNull(frame) ) {
+	    				releaseOutput(); // Everything has been sent.
+	    				frame = ((BlockingOutboundQueue) queue).take();
+	    			}
+	    			startOut(frame);
+	    		}
+	    		processOut();
+	    		
+	    		while ( bbouts[0].position() > 0 ) {
+	    			writeOut();
+	    		}
+	    	}
+    	} finally {
+    		releaseOutput();
+    	}
+    }
+    
+    /**
+     * Closes the connection with the socketChannel.<br>
+     * It does not throw exception if an I/O error occurs.<br>
+     * <br>
+     * If the channel is registered to a selector, must be called by the thread selecting the key,
+     * out of doRead() and doWrite() : the buffers of this context are then given back to the pool.
+     */
+    public void close() {
+    	closed = true;
+    	silentlyClose();
+    	
+    	if ( !Objects.isNull(key) ) {
+    		releaseBuffers();
+    	}
+    }
+    
+    /**
+     * Checks that the channel of this context is in blocking mode.
+     * 
+     * @throws IllegalStateException If the channel is registered to a selector.
+     */
+    private void ensureBlocking() {
+    	if ( !Objects.isNull(key) ) {
+    		throw new IllegalStateException("The channel is not in blocking mode");
+    	}
     }
     
     /**
-     * Adds a message to the message queue, tries to fill bbOut and updateInterestOps.
+     * Adds a message to the message queue, tries to fill bbOut and updateInterestOps.<br>
+     * If this method is called from another thread than the one selecting the key,
+     * the frame is posted to the mailbox of the selector and queued later by the selecting thread.<br>
+     * If the channel is in blocking mode, the frame is only queued and will be written
+     * by the thread performing doBlockingWrite().<br>
+     * The size of the frame counted by the outbound budget does not include the envelope, if any.
      *
      * @param frame The frame to add
      */
     public void queueMessage(Frame frame) {
+    	int size = frame.size();
+    	if ( !admit(frame, size) ) {
+    		return;
+    	}
+    	
+    	pendingFrames.incrementAndGet();
+    	queuedBytes.addAndGet(size);
+    	
+    	if ( Objects.isNull(key) ) {
+    		queue.add(frame);
+    		log(Level.INFO, "Sending frame : " + frame);
+    		return;
+    	}
+    	
+    	if ( !mailbox.inOwnerThread() ) {
+    		postedBytes.addAndGet(size);
+    		mailbox.execute(() -> {
+    			postedBytes.addAndGet(-size);
+    			enqueue(frame);
+    		});
+    		return;
+    	}
+    	
+    	enqueue(frame);
+    }
+    
+    /**
+     * Adds a message to the message queue, tries to fill bbOut and updateInterestOps.<br>
+     * Must be called by the thread selecting the key.
+     *
+     * @param frame The frame to add
+     */
+    private void enqueue(Frame frame) {
+    	if ( !key.isValid() ) {
+    		// The connection has been closed while the frame was in the mailbox.
+    		dequeued(frame.size());
+    		return;
+    	}
+    	
     	queue.add(frame);
     	
+    	var budget = this.budget;
+    	if ( !Objects.isNull(budget) && budget.getPolicy() == OutboundBudget.OverflowPolicy.DROP_OLDEST_PUBLIC ) {
+    		// The frames still in the mailbox are shed when queued, the new frame is dropped too if there is no older public message left.
+    		shed(budget, -postedBytes.get());
+    	}
+    	
     	log(Level.INFO, "Sending frame : " + frame);
         
         processOut();
         updateInterestOps();
+        
+        if ( !sc.isOpen() ) {
+        	releaseOutput(); // bbin may still be read by processIn(), it is released by doRead().
+        }
+    }
+    
+    /**
+     * Applies the outbound budget policy to a frame about to be queued.<br>
+     * Can be called from any thread.
+     * 
+     * @param frame The frame to queue.
+     * @param size The size of the frame, in bytes.
+     * 
+     * @return True if the frame can be queued, false if it has been dropped.
+     */
+    private boolean admit(Frame frame, int size) {
+    	var budget = this.budget;
+    	if ( Objects.isNull(budget) || queuedBytes.get() + size <= budget.getMaxBytes() ) {
+    		return true;
+    	}
+    	
+    	switch ( budget.getPolicy() ) {
+    		case DROP_NEW :
+    			drop(budget, frame, size);
+    			return false;
+    		case DROP_OLDEST_PUBLIC :
+    			if ( !Objects.isNull(key) ) {
+    				return true; // The queue is only touched by the thread selecting the key, which sheds the frames once this one is queued.
+    			}
+    			
+    			shed(budget, size);
+    			if ( queuedBytes.get() + size > budget.getMaxBytes() && frame.isSheddable() ) {
+    				drop(budget, frame, size); // There is no older public message left to drop.
+    				return false;
+    			}
+    			return true;
+    		case DISCONNECT :
+    		default :
+    			var now = System.nanoTime();
+    			if ( !overBudget ) {
+    				overBudgetSince = now;
+    				overBudget = true;
+    			} else if ( now - overBudgetSince > budget.getGracePeriod() ) {
+    				disconnect(budget);
+    				return false;
+    			}
+    			return true;
+    	}
+    }
+    
+    /**
+     * Drops the oldest public messages queued until the given number of bytes fits in the budget,
+     * or until there is no public message left.<br>
+     * Must be called by the thread selecting the key, if the channel is registered to a selector.
+     * 
+     * @param budget The budget of this context.
+     * @param size The number of bytes about to be queued, or the opposite of the bytes not to take into account.
+     */
+    private void shed(OutboundBudget budget, long size) {
+    	while ( queuedBytes.get() + size > budget.getMaxBytes() ) {
+    		var oldest = queue.removeOldest(Frame::isSheddable);
+    		if ( Objects.isNull(oldest) ) {
+    			return;
+    		}
+    		dequeued(oldest.size());
+    		drop(budget, oldest, oldest.size());
+    	}
+    }
+    
+    /**
+     * Closes the connection if it stayed over budget longer than the grace period of the DISCONNECT policy.<br>
+     * admit() only checks the grace period when a frame is queued : a remote no longer reading
+     * is disconnected even if nothing is sent to it meanwhile, as long as this method is called periodically.<br>
+     * Can be called from any thread.
+     */
+    public void checkOutboundBudget() {
+    	var budget = this.budget;
+    	if ( Objects.isNull(budget) || !overBudget || budget.getPolicy() != OutboundBudget.OverflowPolicy.DISCONNECT ) {
+    		return;
+    	}
+    	
+    	if ( System.nanoTime() - overBudgetSince > budget.getGracePeriod() ) {
+    		disconnect(budget);
+    	}
+    }
+    
+    /**
+     * Counts a frame shed by the budget policy.
+     * 
+     * @param budget The budget of this context.
+     * @param frame The dropped frame.
+     * @param size The size of the frame, in bytes.
+     */
+    private void drop(OutboundBudget budget, Frame frame, int size) {
+    	droppedFrames.incrementAndGet();
+    	droppedBytes.addAndGet(size);
+    	budget.frameDropped(size);
+    	
+    	log(Level.FINE, "Frame dropped, more than " + budget.getMaxBytes() + " bytes queued : " + frame);
+    }
+    
+    /**
+     * Closes the connection because it stayed over budget longer than the grace period.<br>
+     * If the channel is registered to a selector, it is closed by the selecting thread.
+     * 
+     * @param budget The budget of this context.
+     */
+    private void disconnect(OutboundBudget budget) {
+    	if ( !overflowClosed.compareAndSet(false, true) ) {
+    		return;
+    	}
+    	
+    	budget.connectionDropped();
+    	log(Level.WARNING, "Closing a connection over budget for more than " + budget.getGracePeriod() / 1_000_000_000 + " seconds");
+    	
+    	closeLater();
+    }
+    
+    /**
+     * Closes the connection from any thread, including while a frame is being handled.<br>
+     * If the channel is registered to a selector, it is closed by the selecting thread
+     * once it is done with the current key.
+     */
+    protected void closeLater() {
+    	if ( Objects.isNull(key) ) {
+    		close();
+    		return;
+    	}
+    	
+    	mailbox.execute(() -> {
+    		if ( key.isValid() ) {
+    			close();
+    		}
+    	});
+    }
+    
+    /**
+     * Reads the following frames with the envelope of the protocol v2 (see FrameEncoder.writeEnveloped) :
+     * an invalid frame received is then skipped without losing the following ones.<br>
+     * <br>
+     * Must be called by the thread reading the channel, between two frames.
+     * 
+     * @throws IllegalStateException If the frames of this context are not read by a FrameReader.
+     */
+    protected void readEnveloped() {
+    	if ( !(freader instanceof FrameReader frameReader) ) {
+    		throw new IllegalStateException("The frames of this context can not be enveloped");
+    	}
+    	
+    	frameReader.useEnvelope();
+    	readEnveloped = true;
+    }
+    
+    /**
+     * Sends with the envelope of the protocol v2 the frames not being written yet.<br>
+     * <br>
+     * Must be called by the thread selecting the key : use queueBeforeEnvelope() from other threads
+     * or if the channel is in blocking mode.
+     */
+    protected void sendEnveloped() {
+    	sendEnveloped = true;
+    }
+    
+    /**
+     * Adds a frame to the message queue, the frames sent after it being sent with the envelope of the protocol v2.<br>
+     * The frame itself is sent without envelope, unless the envelope is already used.
+     * The frames received from now on are read with the envelope : the peer must not send any frame
+     * between its request of the envelope and the receipt of this frame.<br>
+     * Can be called from any thread.
+     * 
+     * @param frame The last frame sent without envelope.
+     */
+    protected void queueBeforeEnvelope(Frame frame) {
+    	envelopeAfter = Objects.requireNonNull(frame);
+    	readEnvelopedNext = true;
+    	queueMessage(frame);
+    }
+    
+    /**
+     * Installs the code run once the connection is closed, after connectionClosed(),
+     * whatever the path closing it and the thread doing so.<br>
+     * It is run at most once, and not run if the connection is already closed.
+     * 
+     * @param closeHook The code to run.
+     */
+    public void onClose(Runnable closeHook) {
+    	this.closeHook = Objects.requireNonNull(closeHook);
+    }
+    
+    /**
+     * Bounds the number of bytes queued for this connection.<br>
+     * Frames already queued are not affected.
+     * 
+     * @param budget The budget, shared with other connections, or null if the queue is not bounded.
+     */
+    public void setOutboundBudget(OutboundBudget budget) {
+    	this.budget = budget;
+    }
+    
+    /**
+     * Stops reading the channel until resumeReading() is called, so that TCP slows down the remote.</br>
+     * The frames already received are still handled.<br>
+     * <br>
+     * Must be called by the thread selecting the key, while accepting a frame.
+     */
+    protected void suspendReading() {
+    	readingSuspended = true;
+    }
+    
+    /**
+     * Reads the channel again, after suspendReading().<br>
+     * <br>
+     * Must be called by the thread selecting the key.
+     */
+    protected void resumeReading() {
+    	if ( !readingSuspended ) {
+    		return;
+    	}
+    	
+    	readingSuspended = false;
+    	if ( !Objects.isNull(key) && key.isValid() ) {
+    		updateInterestOps();
+    	}
+    }
+    
+    /**
+     * Gives the channel of this context to another attachment of its key, such as a file upload.</br>
+     * The context stops reading frames once the frame being accepted returns, and gives back its
+     * buffers : the remote must not send anything after this frame, and the frames still queued are lost.<br>
+     * <br>
+     * Must be called by the thread selecting the key, while accepting a frame.
+     * 
+     * @return The key, to which the new attachment must be attached.
+     * 
+     * @throws IllegalStateException If the channel is in blocking mode.
+     */
+    protected SelectionKey handOver() {
+    	if ( Objects.isNull(key) ) {
+    		throw new IllegalStateException("The channel is in blocking mode");
+    	}
+    	
+    	handedOver = true;
+    	return key;
     }
     
     protected InetSocketAddress getRemoteAddress() throws IOException {
@@ -243,13 +851,63 @@ public abstract class Context {
     public abstract void log(Level level, String msg, Throwable thrw);
     
     /**
-     * Retrieves the size of the sending frame's queue.
+     * Retrieves the size of the sending frame's queue.<br>
+     * Frames posted to the mailbox and not yet queued are counted too,
+     * so this method can be called from any thread.
      * 
      * @return The number of elements in the queue.
      */
 	public int getQueueSize() {
-		synchronized (key) {
-			return queue.size();
-		}
+		return pendingFrames.get();
+	}
+	
+    /**
+     * Retrieves the number of bytes waiting to be sent.<br>
+     * Can be called from any thread.
+     * 
+     * @return The size of the queued frames, in bytes.
+     */
+	public long getQueuedBytes() {
+		return queuedBytes.get();
+	}
+	
+    /**
+     * Retrieves the number of frames shed by the budget policy for this connection.
+     * 
+     * @return The number of dropped frames.
+     */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+	
+    /**
+     * Retrieves the number of bytes shed by the budget policy for this connection.
+     * 
+     * @return The number of dropped bytes.
+     */
+	public long getDroppedBytes() {
+		return droppedBytes.get();
+	}
+	
+    /**
+     * Retrieves the average time spent in the queue by the frames sent on this connection.
+     * 
+     * @param bulk True for the file chunks, false for the other frames.
+     * 
+     * @return The average queueing delay, in nanoseconds.
+     */
+	public long getAverageQueueDelay(boolean bulk) {
+		return queue.averageDelay(bulk);
+	}
+	
+    /**
+     * Retrieves the maximum time spent in the queue by a frame sent on this connection.
+     * 
+     * @param bulk True for the file chunks, false for the other frames.
+     * 
+     * @return The maximum queueing delay, in nanoseconds.
+     */
+	public long getMaxQueueDelay(boolean bulk) {
+		return queue.maxDelay(bulk);
 	}
 }
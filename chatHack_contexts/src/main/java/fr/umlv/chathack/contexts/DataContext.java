@@ -0,0 +1,142 @@
+package fr.umlv.chathack.contexts;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.logging.Level;
+
+/**
+ * Context of a data connection, on which the content of a file is sent without frames.</br>
+ * The connection is opened by the recipient of the file to the private server of the sender,
+ * and only carries this file : the frames of the private communication keep flowing on their own
+ * connection while the file is transferred.</br>
+ * A connection carries a range of the file, from its start to its end : the whole file, or one of
+ * its stripes when the file is transferred on several connections.
+ */
+public abstract class DataContext {
+	protected final SelectionKey key;
+	protected final SocketChannel sc;
+	protected final Client client;
+	protected final FileChannel file;
+	protected final String fileName;
+	protected final long end; // The position in the file following the range transferred.
+	protected long position; // The position in the file of the next byte to transfer.
+	private final StripedFile striped;
+	private boolean closed;
+	
+	/**
+	 * Constructor of the context of a data connection, carrying the given range of the file.
+	 * 
+	 * @param key The key of the connection, to which this context is attached.
+	 * @param client The client owning the connection.
+	 * @param file The file read or written.
+	 * @param striped The file transferred, on this connection and maybe others.
+	 * @param start The position in the file of the first byte to transfer.
+	 * @param end The position in the file following the last byte to transfer.
+	 */
+	protected DataContext(SelectionKey key, Client client, FileChannel file, StripedFile striped, long start, long end) {
+		if ( start < 0 || start > end ) {
+			throw new IllegalArgumentException("The range of the file must start between 0 and its end.");
+		}
+		
+		this.key = Objects.requireNonNull(key);
+		this.sc = (SocketChannel) key.channel();
+		this.client = Objects.requireNonNull(client);
+		this.file = Objects.requireNonNull(file);
+		this.striped = Objects.requireNonNull(striped);
+		this.fileName = striped.getFileName();
+		this.end = end;
+		this.position = start;
+		this.closed = false;
+		
+		striped.stripeOpened();
+	}
+	
+	/**
+	 * Finishes the process of connection, if this context opened the connection.
+	 * 
+	 * @throws IOException
+	 */
+	public void doConnect() throws IOException {
+		throw new IllegalStateException("The connection is already established");
+	}
+	
+	/**
+	 * Performs the read action on the connection.
+	 * 
+	 * @throws IOException
+	 */
+	public abstract void doRead() throws IOException;
+	
+	/**
+	 * Performs the write action on the connection.
+	 * 
+	 * @throws IOException
+	 */
+	public abstract void doWrite() throws IOException;
+	
+	/**
+	 * Closes the connection, but not the file.<br>
+	 * It does not throw exception if an I/O error occurs.
+	 */
+	protected void closeConnection() {
+		try {
+			sc.close();
+		} catch (IOException e) {
+			client.log(Level.SEVERE, "Error while closing the data connection of the file " + fileName, e);
+		}
+	}
+	
+	/**
+	 * Retrieves the position in the file following the range carried by this connection.
+	 * 
+	 * @return The end of the range.
+	 */
+	public long getEnd() {
+		return end;
+	}
+	
+	/**
+	 * Determines if the whole range has been transferred.
+	 * 
+	 * @return True if the transfer is complete.
+	 */
+	public boolean isComplete() {
+		return position == end;
+	}
+	
+	/**
+	 * Determines if the connection and the file are closed, the transfer of the range being then complete or interrupted.
+	 * 
+	 * @return True if the transfer is over.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	/**
+	 * Closes the connection and the file, then tells the striped file this range is over.<br>
+	 * It does not throw exception if an I/O error occurs.
+	 */
+	public void close() {
+		if ( closed ) {
+			return;
+		}
+		closed = true;
+		
+		closeConnection();
+		
+		try {
+			file.close();
+		} catch (IOException e) {
+			client.log(Level.SEVERE, "Error while closing the file " + fileName, e);
+		}
+		
+		if ( !isComplete() ) {
+			client.log(Level.WARNING, "Transfer of file " + fileName + " interrupted at byte " + position + " of the range ending at " + end + ".");
+		}
+		striped.stripeClosed(this);
+	}
+}
@@ -0,0 +1,74 @@
+package fr.umlv.chathack.contexts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Writes the received files on the disk, on a dedicated thread.</br>
+ * The thread selecting the keys hands the received bytes to the writer and is told through its mailbox
+ * once they are written : a slow disk never blocks the conversations.</br>
+ * </br>
+ * The writer does not bound the bytes waiting for the disk : each connection counts its own, and stops
+ * reading the channel above MAX_PENDING_BYTES, so that TCP slows down the remote client.
+ */
+public class DiskWriter {
+
+	/**
+	 * The bytes received on a connection and waiting for the disk above which the connection is no longer read.
+	 */
+	public static final int MAX_PENDING_BYTES = 1024 * 1024;
+
+	/**
+	 * The bytes received on a connection and waiting for the disk under which the connection is read again.
+	 */
+	public static final int RESUME_PENDING_BYTES = MAX_PENDING_BYTES / 2;
+
+	private final Mailbox mailbox;
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor of a disk writer.
+	 *
+	 * @param mailbox The mailbox of the thread selecting the keys, which is told when the bytes are written.
+	 */
+	public DiskWriter(Mailbox mailbox) {
+		this.mailbox = Objects.requireNonNull(mailbox);
+		this.executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("disk-writer").factory());
+	}
+
+	/**
+	 * Writes the given bytes at the given position of a file.</br>
+	 * The completion is executed by the thread selecting the keys, with the error if the bytes could not
+	 * be written, null otherwise. The buffer must not be used until then.
+	 *
+	 * @param file The file, opened for writing.
+	 * @param data The bytes to write, in read-mode.
+	 * @param position The position in the file of the first byte.
+	 * @param completion The action to execute once the bytes are written.
+	 */
+	public void write(FileChannel file, ByteBuffer data, long position, Consumer<IOException> completion) {
+		Objects.requireNonNull(file);
+		Objects.requireNonNull(data);
+		Objects.requireNonNull(completion);
+
+		executor.execute(() -> {
+			IOException error = null;
+			try {
+				var offset = position;
+				while ( data.hasRemaining() ) {
+					offset += file.write(data, offset);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+
+			var result = error;
+			mailbox.execute(() -> completion.accept(result));
+		});
+	}
+}
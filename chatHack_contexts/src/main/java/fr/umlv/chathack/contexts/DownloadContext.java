@@ -0,0 +1,156 @@
+package fr.umlv.chathack.contexts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.util.Objects;
+import java.util.logging.Level;
+
+import fr.umlv.chathack.resources.frames.Frame;
+
+/**
+ * Context of the data connection on which a file is received.</br>
+ * Once connected to the private server of the sender, the context sends the frame asking for the file
+ * then hands the received bytes to the disk writer, in direct buffers borrowed for each read and given
+ * back once written. The connection is no longer read while too many bytes wait for the disk.</br>
+ * The bytes are written in the order they are received, so the bytes written form the beginning of the range :
+ * an interrupted download is resumed from the position following them.
+ */
+public class DownloadContext extends DataContext {
+	private final ByteBuffer request; // The frame asking for the file, in read-mode.
+	private final BufferPool pool;
+	private final DiskWriter writer;
+	private long written; // The position following the bytes written from the start of the range, without gap.
+	private boolean failed; // True once bytes could not be written, the following ones being ignored.
+	private int pendingBytes; // Bytes received and waiting for the disk.
+	private boolean closing; // True once the connection is closed, the file being closed once the pending bytes are written.
+	
+	/**
+	 * Constructor of the download of a range of a file, on a connection being established.
+	 * 
+	 * @param key The key of the connection, to which this context is attached.
+	 * @param client The client owning the connection.
+	 * @param file The file to write, opened for writing.
+	 * @param striped The file received, on this connection and maybe others.
+	 * @param start The position in the file of the first byte to receive.
+	 * @param end The position in the file following the last byte to receive.
+	 * @param request The frame asking the sender for the range.
+	 * @param writer The disk writer writing the received bytes.
+	 */
+	public DownloadContext(SelectionKey key, Client client, FileChannel file, StripedFile striped, long start, long end,
+			Frame request, DiskWriter writer) {
+		super(key, client, file, striped, start, end);
+		
+		this.request = ByteBuffer.allocate(request.size());
+		request.writeTo(this.request, 0);
+		this.request.flip();
+		this.pool = BufferPool.FILES;
+		this.writer = Objects.requireNonNull(writer);
+		this.written = start;
+		this.failed = false;
+		this.pendingBytes = 0;
+		this.closing = false;
+	}
+	
+	@Override
+	public void doConnect() throws IOException {
+		if ( !sc.finishConnect() ) {
+			return;
+		}
+		
+		key.interestOps(SelectionKey.OP_WRITE);
+	}
+	
+	@Override
+	public void doWrite() throws IOException {
+		sc.write(request);
+		
+		if ( !request.hasRemaining() ) {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+	
+	@Override
+	public void doRead() throws IOException {
+		var bb = pool.acquire();
+		int read;
+		try {
+			bb.limit((int) Math.min(bb.capacity(), end - position));
+			read = sc.read(bb);
+		} catch (IOException e) {
+			pool.release(bb);
+			throw e;
+		}
+		
+		if ( read <= 0 ) {
+			pool.release(bb);
+			if ( read == -1 ) {
+				close();
+			}
+			return;
+		}
+		
+		bb.flip();
+		writer.write(file, bb, position, error -> written(bb, read, error));
+		position += read;
+		pendingBytes += read;
+		
+		if ( position == end ) {
+			closeConnection(); // The whole range has been received.
+		} else if ( pendingBytes >= DiskWriter.MAX_PENDING_BYTES ) {
+			key.interestOps(0); // The sender is slowed down while the disk is behind.
+		}
+	}
+	
+	/**
+	 * Called once received bytes have been written by the disk writer.
+	 * 
+	 * @param bb The buffer of the bytes.
+	 * @param size The number of bytes.
+	 * @param error The error if the bytes could not be written, null otherwise.
+	 */
+	private void written(ByteBuffer bb, int size, IOException error) {
+		pool.release(bb);
+		pendingBytes -= size;
+		
+		if ( !Objects.isNull(error) && !failed ) {
+			client.log(Level.SEVERE, "Error while writing into the file " + fileName, error);
+			failed = true;
+			closing = true;
+		} else if ( !failed ) {
+			written += size;
+		}
+		
+		if ( isComplete() || closing ) {
+			close();
+		} else if ( pendingBytes < DiskWriter.RESUME_PENDING_BYTES && key.isValid() ) {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+	
+	@Override
+	public boolean isComplete() {
+		return written == end;
+	}
+	
+	/**
+	 * Retrieves the position following the bytes written from the start of the range, from which the download can be resumed.
+	 * 
+	 * @return The position of the first byte not written.
+	 */
+	public long getWrittenPosition() {
+		return written;
+	}
+	
+	@Override
+	public void close() {
+		closing = true;
+		if ( pendingBytes > 0 ) {
+			closeConnection(); // The file is closed once the pending bytes are written.
+			return;
+		}
+		
+		super.close();
+	}
+}
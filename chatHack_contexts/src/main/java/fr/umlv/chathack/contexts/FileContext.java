@@ -1,138 +1,95 @@
 package fr.umlv.chathack.contexts;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 public class FileContext {
-	private static final int BUFFER_SIZE = 512_000; // Buffer of 512 Ko
-	
-	private final int size;
+	private final long size;
 	private final String name;
-	private int totalReceived;
-	private final ByteBuffer data;
-	private final ByteBuffer overageData;
-	private final FileOutputStream outputStream;
-	private State state;
-	
-	public enum State {
-		REFILL, FULL
-	}
-	
+	private final FileChannel file;
+	private final DiskWriter writer;
+	private long totalReceived;
+	private long totalWritten; // Bytes received and written in the file.
+
 	/**
 	 * Constructor of a fileContext.</br>
 	 * It contains informations about a file for download
-	 * such as the file name, its size and its content in bytes.</br>
-	 * The full content is not stored in this object, a buffer is filled up as data is received
-	 * from the channel. Then when the buffer is full, the content is written in a file,
-	 * and the file continues to fill until it reaches its size.
-	 * 
-	 * @param name The file name
+	 * such as the file name, its size and the channel of the file.</br>
+	 * The content is not kept in this object : each chunk received from the channel is handed to
+	 * the disk writer, which writes it at its position in the file straight from the array of the chunk,
+	 * until the file reaches its size.
+	 * The memory used by a download is then the one of the chunks waiting for the disk, whatever the size of the file.
+	 *
 	 * @param size The full size of the file
+	 * @param name The file name
+	 * @param file The file, opened for writing
+	 * @param writer The disk writer writing the chunks
 	 */
-	public FileContext(int size, String name, FileOutputStream outputStream) {
+	public FileContext(long size, String name, FileChannel file, DiskWriter writer) {
 		if ( size <= 0 ) {
 			throw new IllegalArgumentException("The file size must be positive.");
 		}
-		
+
 		this.size = size;
 		this.name = Objects.requireNonNull(name);
-		this.outputStream = Objects.requireNonNull(outputStream);
+		this.file = Objects.requireNonNull(file);
+		this.writer = Objects.requireNonNull(writer);
 		this.totalReceived = 0;
-		this.data = ByteBuffer.allocate(BUFFER_SIZE);
-		this.overageData = ByteBuffer.allocate(BUFFER_SIZE);
-		this.state = State.REFILL;
+		this.totalWritten = 0;
 	}
-	
+
 	/**
 	 * Retrieves the file's name associated to this context.
-	 * 
+	 *
 	 * @return The file's name.
 	 */
 	public String getFileName() {
 		return this.name;
 	}
-	
+
 	/**
-	 * Retrieve the state of the buffer.
-	 * REFILL if the buffer can receive more data, and
-	 * FULL if the buffer is full OR if all of the file data has been received.
-	 * 
-	 * @return The state of the buffer
+	 * Hands the given chunk to the disk writer, to be written after the chunks already received.</br>
+	 * The completion is executed by the thread selecting the keys once the chunk is written,
+	 * with the error if it could not be written, null otherwise.
+	 *
+	 * @param data The chunk to write.
+	 * @param completion The action to execute once the chunk is written.
+	 *
+	 * @throws IOException If the chunk goes beyond the size of the file.
 	 */
-	public State state() {
-		if ( totalReceived == size ) {
-			return State.FULL;
+	public void write(byte[] data, Consumer<IOException> completion) throws IOException {
+		Objects.requireNonNull(completion);
+		if ( data.length > size - totalReceived ) {
+			throw new IOException("The file " + name + " is larger than announced");
 		}
-		
-		return state;
+
+		writer.write(file, ByteBuffer.wrap(data), totalReceived, error -> {
+			if ( Objects.isNull(error) ) {
+				totalWritten += data.length;
+			}
+			completion.accept(error);
+		});
+		totalReceived += data.length;
 	}
-	
+
 	/**
-	 * Fill the buffer with the given data.</br>
-	 * Update the state of the main buffer : FULL if the buffer is full, REFILL if not.
-	 * 
-	 * @param data The data to add to the buffer.
-	 * 
-	 * @throws IllegalStateException If the buffer is already full.
+	 * Determines if all of the content of the file has been written.
+	 *
+	 * @return True if the file is complete.
 	 */
-	public void fillBuffer(byte[] data) throws IllegalStateException {
-		if ( state != State.REFILL ) {
-			throw new IllegalStateException("The file buffer can not receive data");
-		}
-		
-		int remaining = this.data.remaining();
-		/* If the buffer can not contain all of the data received, we put the "extra bytes" in another buffer
-		 * until the main buffer is empty.
-		 */
-		if ( data.length > remaining ) {
-			this.data.put(data, 0, remaining);
-			this.overageData.put(data, remaining, data.length - remaining);
-		} else {
-			this.data.put(data);
-		}
-		
-		state = this.data.hasRemaining() ? State.REFILL : State.FULL;
-		totalReceived += data.length;
+	public boolean isComplete() {
+		return totalWritten == size;
 	}
-	
+
 	/**
-	 * If the buffer is full, transfers the data in the stream corresponding to the file.
-	 * Close the outputStream if transfer is complete.
-	 * 
-	 * @return False if all of the content as been transfered in the file, True otherwise.
-	 * 
-	 * @throws IllegalStateException If the buffer was not full.
+	 * Closes the file, whose download is given up.
+	 *
 	 * @throws IOException
 	 */
-	public boolean flush() throws IllegalStateException, IOException {
-		if (state != State.FULL && totalReceived < size) {
-			throw new IllegalStateException("The buffer is not full");
-		}
-
-		data.flip();
-		byte[] arr = new byte[data.remaining()];
-		data.get(arr);
-
-		outputStream.write(arr);
-
-		if (size == totalReceived) {
-			overageData.flip();
-			byte[] arr2 = new byte[overageData.remaining()];
-			overageData.get(arr2);
-			outputStream.write(arr2);
-			outputStream.close();
-			return false;
-		}
-		
-		data.clear();
-		overageData.flip();
-		data.put(overageData);
-		overageData.clear();
-		
-		state = State.REFILL;
-
-		return size != totalReceived;
+	public void close() throws IOException {
+		file.close();
 	}
 }
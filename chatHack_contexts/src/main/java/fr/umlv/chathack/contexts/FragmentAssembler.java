@@ -0,0 +1,124 @@
+package fr.umlv.chathack.contexts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+import fr.umlv.chathack.resources.frames.PublicFragmentFromCliFrame;
+
+/**
+ * Reassembles the long public messages received in fragments on a connection, sender by sender.</br>
+ * The fragments of a message are copied as they arrive, in a buffer growing up to the size of the message.
+ * The bytes of the incomplete messages of a connection are bounded : a fragment which would exceed this cap,
+ * or which does not follow the previous fragment of its sender, drops the message it belongs to.</br>
+ * </br>
+ * Only the thread reading the connection uses the assembler.
+ */
+class FragmentAssembler {
+	private static final int INITIAL_CAPACITY = 4 * PublicFragmentFromCliFrame.FRAGMENT_SIZE;
+
+	private final int maxBufferedBytes;
+
+	private HashMap<String, Message> messages; // Null until the first fragment, most connections never receive any.
+	private int bufferedBytes; // The capacity of the buffers of the incomplete messages.
+
+	/**
+	 * Incomplete message of a sender.
+	 */
+	private static class Message {
+		private byte[] bytes;
+		private int size;
+		private int nextSequence;
+	}
+
+	/**
+	 * Constructor of an assembler.
+	 *
+	 * @param maxBufferedBytes The maximum number of bytes held by the incomplete messages of the connection.
+	 */
+	FragmentAssembler(int maxBufferedBytes) {
+		if ( maxBufferedBytes < PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE ) {
+			throw new IllegalArgumentException("The assembler must be able to hold at least one message");
+		}
+
+		this.maxBufferedBytes = maxBufferedBytes;
+		this.messages = null;
+		this.bufferedBytes = 0;
+	}
+
+	/**
+	 * Adds a fragment to the message of its sender.
+	 *
+	 * @param sender The login of the client who sent the fragment.
+	 * @param sequence The number of the fragment in its message, starting from 0.
+	 * @param continued True if other fragments of the message follow this one.
+	 * @param chunk The bytes of the fragment.
+	 *
+	 * @return The bytes of the message if this fragment is the last one, null otherwise.
+	 *
+	 * @throws IllegalStateException If the fragment does not follow the previous one or if the message
+	 * is too long, in which case the message is dropped.
+	 */
+	byte[] add(String sender, int sequence, boolean continued, byte[] chunk) {
+		Objects.requireNonNull(sender);
+		Objects.requireNonNull(chunk);
+
+		if ( Objects.isNull(messages) ) {
+			messages = new HashMap<>();
+		}
+
+		var message = messages.get(sender);
+
+		if ( sequence == 0 ) {
+			// A new message starts, the previous one of this sender will not be completed.
+			drop(sender);
+			message = new Message();
+			message.bytes = new byte[0];
+			messages.put(sender, message);
+		} else if ( Objects.isNull(message) || message.nextSequence != sequence ) {
+			drop(sender);
+			throw new IllegalStateException("Fragment " + sequence + " of the message of " + sender + " received out of sequence");
+		}
+
+		var size = message.size + chunk.length;
+
+		if ( size > PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE ) {
+			drop(sender);
+			throw new IllegalStateException("The message of " + sender + " exceeds " + PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE + " bytes");
+		}
+		if ( size > message.bytes.length ) {
+			var capacity = Math.min(Math.max(size, Math.max(INITIAL_CAPACITY, 2 * message.bytes.length)), PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+
+			if ( bufferedBytes - message.bytes.length + capacity > maxBufferedBytes ) {
+				drop(sender);
+				throw new IllegalStateException("Too many incomplete messages, the message of " + sender + " is dropped");
+			}
+			bufferedBytes += capacity - message.bytes.length;
+			message.bytes = Arrays.copyOf(message.bytes, capacity);
+		}
+
+		System.arraycopy(chunk, 0, message.bytes, message.size, chunk.length);
+		message.size = size;
+		message.nextSequence = sequence + 1;
+
+		if ( continued ) {
+			return null;
+		}
+
+		drop(sender);
+		return Arrays.copyOf(message.bytes, message.size);
+	}
+
+	/**
+	 * Drops the incomplete message of a sender, if any.
+	 *
+	 * @param sender The login of the sender.
+	 */
+	private void drop(String sender) {
+		var message = messages.remove(sender);
+
+		if ( !Objects.isNull(message) ) {
+			bufferedBytes -= message.bytes.length;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package fr.umlv.chathack.contexts;
+
+import java.nio.channels.Selector;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of commands to execute by the thread selecting the keys of a selector.</br>
+ * Any thread can post a command (a frame to send, an interestOps change...),
+ * but only the owner thread executes them, so the contexts registered to the selector
+ * are never touched by another thread.</br>
+ * </br>
+ * The selector is woken up once per drain cycle, no matter how many commands are posted.
+ */
+public class Mailbox implements Executor {
+	private final Selector selector;
+	private final Thread owner;
+
+	private final Queue<Runnable> commands;
+	private final AtomicBoolean wakeupPending; // True if the selector has been woken up since the last drain.
+
+	/**
+	 * Constructor of a mailbox.
+	 *
+	 * @param selector The selector whose keys are treated by the owner thread.
+	 * @param owner The only thread allowed to touch the contexts registered to the selector.
+	 */
+	public Mailbox(Selector selector, Thread owner) {
+		this.selector = Objects.requireNonNull(selector);
+		this.owner = Objects.requireNonNull(owner);
+
+		this.commands = new ConcurrentLinkedQueue<>();
+		this.wakeupPending = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Determines if the current thread is the owner of this mailbox.
+	 *
+	 * @return True if the current thread is the one selecting the keys.
+	 */
+	public boolean inOwnerThread() {
+		return Thread.currentThread() == owner;
+	}
+
+	/**
+	 * Posts a command which will be executed by the owner thread,
+	 * and wakes up the selector if it has not been woken up since the last drain.
+	 *
+	 * @param command The command to execute.
+	 */
+	@Override
+	public void execute(Runnable command) {
+		commands.add(Objects.requireNonNull(command));
+
+		if ( wakeupPending.compareAndSet(false, true) ) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Executes every command posted since the last drain.</br>
+	 * Must only be called by the owner thread, before selecting the keys.
+	 */
+	public void drain() {
+		if ( !inOwnerThread() ) {
+			throw new IllegalStateException("Only the owner thread can drain the mailbox");
+		}
+
+		wakeupPending.set(false);
+
+		Runnable command;
+		while ( (command = commands.poll()) != null ) {
+			command.run();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package fr.umlv.chathack.contexts;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maximum number of bytes waiting to be sent to a connection, and the policy applied
+ * when a slow connection exceeds it.</br>
+ * A single budget is shared by every client of a server, and counts the frames shed
+ * and the clients disconnected by its policy. The context of each client also counts
+ * what has been shed for it.
+ */
+public class OutboundBudget {
+	private final long maxBytes;
+	private final OverflowPolicy policy;
+	private final long gracePeriod; // In nanoseconds.
+
+	private final LongAdder droppedFrames;
+	private final LongAdder droppedBytes;
+	private final LongAdder disconnections;
+
+	/**
+	 * Policy applied when a frame is queued to a connection whose budget is exceeded.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The oldest public messages queued are dropped until the new frame fits in the budget.
+		 * Other frames are never dropped.
+		 */
+		DROP_OLDEST_PUBLIC,
+
+		/**
+		 * The new frame is dropped.
+		 */
+		DROP_NEW,
+
+		/**
+		 * The connection is closed if it is still over budget after the grace period.
+		 */
+		DISCONNECT
+	}
+
+	/**
+	 * Constructor of an outbound budget.
+	 *
+	 * @param maxBytes The maximum number of bytes queued for a connection.
+	 * @param policy The policy applied when a connection exceeds the budget.
+	 * @param gracePeriod The time a connection can stay over budget before being disconnected,
+	 * only used with the DISCONNECT policy.
+	 * @param unit The unit of the grace period.
+	 */
+	public OutboundBudget(long maxBytes, OverflowPolicy policy, long gracePeriod, TimeUnit unit) {
+		if ( maxBytes <= 0 ) {
+			throw new IllegalArgumentException("The budget must be positive");
+		}
+		if ( gracePeriod < 0 ) {
+			throw new IllegalArgumentException("The grace period can not be negative");
+		}
+
+		this.maxBytes = maxBytes;
+		this.policy = Objects.requireNonNull(policy);
+		this.gracePeriod = unit.toNanos(gracePeriod);
+
+		this.droppedFrames = new LongAdder();
+		this.droppedBytes = new LongAdder();
+		this.disconnections = new LongAdder();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Retrieves the time a connection can stay over budget before being disconnected.
+	 *
+	 * @return The grace period, in nanoseconds.
+	 */
+	public long getGracePeriod() {
+		return gracePeriod;
+	}
+
+	/**
+	 * Counts a frame shed by the policy.
+	 *
+	 * @param size The size of the frame, in bytes.
+	 */
+	void frameDropped(int size) {
+		droppedFrames.increment();
+		droppedBytes.add(size);
+	}
+
+	/**
+	 * Counts a connection closed by the policy.
+	 */
+	void connectionDropped() {
+		disconnections.increment();
+	}
+
+	/**
+	 * Retrieves the number of frames shed since the server started.
+	 *
+	 * @return The number of frames.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.sum();
+	}
+
+	/**
+	 * Retrieves the number of bytes shed since the server started.
+	 *
+	 * @return The number of bytes.
+	 */
+	public long getDroppedBytes() {
+		return droppedBytes.sum();
+	}
+
+	/**
+	 * Retrieves the number of connections closed for being over budget since the server started.
+	 *
+	 * @return The number of connections.
+	 */
+	public long getDisconnections() {
+		return disconnections.sum();
+	}
+
+	@Override
+	public String toString() {
+		return policy + " over " + maxBytes + " bytes";
+	}
+}
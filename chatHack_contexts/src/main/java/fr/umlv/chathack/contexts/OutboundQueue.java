@@ -0,0 +1,201 @@
+package fr.umlv.chathack.contexts;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import fr.umlv.chathack.resources.frames.Frame;
+
+/**
+ * Queue of the frames waiting to be sent to a connection, split in two FIFO lanes.</br>
+ * The control lane holds the chat and protocol frames, the bulk lane the file chunks.
+ * Control frames go first, but once the control lane has sent 'controlWeight' times
+ * the size of the last bulk frame, a waiting bulk frame is sent : under contention,
+ * the bulk lane keeps at least 1 / (controlWeight + 1) of the bandwidth, and a control
+ * frame never waits behind more than one bulk frame.</br>
+ * </br>
+ * The queue is not thread-safe : it is only used by the thread selecting the key of the connection,
+ * the frames queued by other threads being posted to its mailbox (see BlockingOutboundQueue for the
+ * channels in blocking mode). The time spent by the frames in each lane is measured when they are polled.
+ */
+class OutboundQueue {
+	private ArrayDeque<Entry> control; // Null until a control frame is added.
+	private ArrayDeque<Entry> bulk; // Null until a bulk frame is added, most connections never send files.
+
+	private final int controlWeight;
+	private long controlAllowance; // Bytes the control lane can still send before a waiting bulk frame.
+
+	private final Delay controlDelay;
+	private final Delay bulkDelay;
+
+	private record Entry(Frame frame, long queuedAt) {}
+
+	/**
+	 * Statistics about the time spent by the frames in a lane.</br>
+	 * Only written by the thread polling the queue, they can be read from any thread.
+	 */
+	private static class Delay {
+		private volatile long frames;
+		private volatile long total; // In nanoseconds.
+		private volatile long max; // In nanoseconds.
+
+		private void record(long delay) {
+			total += delay;
+			frames++;
+			max = Math.max(max, delay);
+		}
+	}
+
+	/**
+	 * Constructor of an outbound queue.
+	 *
+	 * @param controlWeight The number of bytes the control lane can send for each byte of the bulk lane
+	 * when both lanes have frames waiting.
+	 */
+	OutboundQueue(int controlWeight) {
+		if ( controlWeight <= 0 ) {
+			throw new IllegalArgumentException("The weight of the control lane must be positive");
+		}
+
+		this.control = null;
+		this.bulk = null;
+
+		this.controlWeight = controlWeight;
+		this.controlAllowance = 0;
+
+		this.controlDelay = new Delay();
+		this.bulkDelay = new Delay();
+	}
+
+	/**
+	 * Adds a frame at the end of its lane.
+	 *
+	 * @param frame The frame to add.
+	 */
+	void add(Frame frame) {
+		var entry = new Entry(Objects.requireNonNull(frame), System.nanoTime());
+
+		if ( frame.isBulk() ) {
+			if ( Objects.isNull(bulk) ) {
+				bulk = new ArrayDeque<>();
+			}
+			bulk.add(entry);
+		} else {
+			if ( Objects.isNull(control) ) {
+				control = new ArrayDeque<>();
+			}
+			control.add(entry);
+		}
+	}
+
+	/**
+	 * Retrieves and removes the next frame to send, according to the weights of the lanes.
+	 *
+	 * @return The next frame, or null if both lanes are empty.
+	 */
+	Frame poll() {
+		Entry entry;
+
+		if ( !isEmpty(bulk) && (isEmpty(control) || controlAllowance <= 0) ) {
+			entry = bulk.remove();
+			controlAllowance = (long) controlWeight * entry.frame().size();
+			bulkDelay.record(System.nanoTime() - entry.queuedAt());
+		} else if ( !isEmpty(control) ) {
+			entry = control.remove();
+			controlAllowance -= entry.frame().size();
+			controlDelay.record(System.nanoTime() - entry.queuedAt());
+		} else {
+			return null;
+		}
+
+		return entry.frame();
+	}
+
+	/**
+	 * Removes the oldest frame matching the predicate, in both lanes.
+	 *
+	 * @param filter The predicate the frame must match.
+	 *
+	 * @return The removed frame, or null if no frame matches.
+	 */
+	Frame removeOldest(Predicate<Frame> filter) {
+		var oldestControl = oldest(control, filter);
+		var oldestBulk = oldest(bulk, filter);
+
+		if ( Objects.isNull(oldestControl) && Objects.isNull(oldestBulk) ) {
+			return null;
+		}
+		if ( Objects.isNull(oldestBulk) || (!Objects.isNull(oldestControl) && oldestControl.queuedAt() <= oldestBulk.queuedAt()) ) {
+			control.removeFirstOccurrence(oldestControl);
+			return oldestControl.frame();
+		}
+		bulk.removeFirstOccurrence(oldestBulk);
+		return oldestBulk.frame();
+	}
+
+	/**
+	 * Retrieves the first entry of a lane whose frame matches the predicate.
+	 *
+	 * @param lane The lane, in FIFO order.
+	 * @param filter The predicate the frame must match.
+	 *
+	 * @return The oldest matching entry, or null if there is none.
+	 */
+	private static Entry oldest(ArrayDeque<Entry> lane, Predicate<Frame> filter) {
+		if ( isEmpty(lane) ) {
+			return null;
+		}
+
+		for (var entry : lane) {
+			if ( filter.test(entry.frame()) ) {
+				return entry;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Determines if both lanes are empty.
+	 *
+	 * @return True if no frame is waiting.
+	 */
+	boolean isEmpty() {
+		return isEmpty(control) && isEmpty(bulk);
+	}
+
+	/**
+	 * Determines if a lane is empty.
+	 *
+	 * @param lane The lane, possibly not allocated yet.
+	 *
+	 * @return True if no frame is waiting in the lane.
+	 */
+	private static boolean isEmpty(ArrayDeque<Entry> lane) {
+		return Objects.isNull(lane) || lane.isEmpty();
+	}
+
+	/**
+	 * Retrieves the average time spent in the queue by the frames of a lane.
+	 *
+	 * @param bulkLane True for the bulk lane, false for the control lane.
+	 *
+	 * @return The average delay, in nanoseconds.
+	 */
+	long averageDelay(boolean bulkLane) {
+		var delay = bulkLane ? bulkDelay : controlDelay;
+		var frames = delay.frames;
+		return frames == 0 ? 0 : delay.total / frames;
+	}
+
+	/**
+	 * Retrieves the maximum time spent in the queue by a frame of a lane.
+	 *
+	 * @param bulkLane True for the bulk lane, false for the control lane.
+	 *
+	 * @return The maximum delay, in nanoseconds.
+	 */
+	long maxDelay(boolean bulkLane) {
+		return (bulkLane ? bulkDelay : controlDelay).max;
+	}
+}
@@ -76,4 +76,11 @@ public interface Server {
 	 * @param positiveAnswer The database response, True if positive, False if negative.
 	 */
 	void tryAuthenticate(long id, boolean positiveAnswer);
+	
+    /**
+     * Removes the client from the authenticated list, if he was authenticated.
+     * 
+     * @param ctx The client's context.
+     */
+	void removeClient(ServerContext ctx);
 }
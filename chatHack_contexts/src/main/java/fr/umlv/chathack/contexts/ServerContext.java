@@ -2,12 +2,16 @@ package fr.umlv.chathack.contexts;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.util.Objects;
 import java.util.logging.Level;
 
+import fr.umlv.chathack.resources.frames.ConnectionAnswerFrame;
 import fr.umlv.chathack.resources.frames.Frame;
-import fr.umlv.chathack.resources.frames.PublicMessageFromServFrame;
+import fr.umlv.chathack.resources.frames.PublicFragmentFromCliFrame;
+import fr.umlv.chathack.resources.frames.PublicMessageFromCliFrame;
 import fr.umlv.chathack.resources.frames.ServerVisitor;
 import fr.umlv.chathack.resources.readers.FrameReader;
 import fr.umlv.chathack.resources.readers.Reader;
@@ -15,16 +19,32 @@ import fr.umlv.chathack.resources.readers.Reader;
 public class ServerContext extends Context implements ServerVisitor {
     final private Server server;
     
-    private String login;
-    private String pendingLogin; // The login whose authentication has not be made.
-    private boolean guest; // The client is a guest if he is not register by the database (he does not have password).
+    // Volatile because the authentication is confirmed by the thread communicating with the database.
+    private volatile String login;
+    private volatile byte[] encodedLogin; // The login encoded in UTF-8, written before login.
+    private volatile String pendingLogin; // The login whose authentication has not be made.
+    private volatile boolean guest; // The client is a guest if he is not register by the database (he does not have password).
+    private volatile boolean envelopeAsked; // The client asked for the envelope of the protocol v2 with its connection request.
+    private int nextFragment; // The sequence of the next fragment of the public message being relayed, -1 if it is dropped.
 	
-    public ServerContext(SelectionKey key, Server server) {
-    	this(key, server, FrameReader.class);
+    public ServerContext(SelectionKey key, Mailbox mailbox, Server server) {
+    	this(key, mailbox, server, FrameReader.class);
     }
     
-    public <T extends Reader> ServerContext(SelectionKey key, Server server, Class<T> reader) {
-    	super(key, reader);
+    public <T extends Reader> ServerContext(SelectionKey key, Mailbox mailbox, Server server, Class<T> reader) {
+    	super(key, mailbox, reader);
+        this.server = server;
+        
+        this.login = null;
+        this.pendingLogin = null;
+    }
+    
+    public ServerContext(SocketChannel sc, Server server) {
+    	this(sc, server, FrameReader.class);
+    }
+    
+    public <T extends Reader> ServerContext(SocketChannel sc, Server server, Class<T> reader) {
+    	super(sc, reader);
         this.server = server;
         
         this.login = null;
@@ -36,6 +56,7 @@ public class ServerContext extends Context implements ServerVisitor {
      * 
      */
     public void confirmAuthentication() {
+    	encodedLogin = pendingLogin.getBytes(StandardCharsets.UTF_8);
     	login = pendingLogin;
     	pendingLogin = null;
     }
@@ -50,6 +71,11 @@ public class ServerContext extends Context implements ServerVisitor {
     	return guest;
     }
     
+    @Override
+    protected void connectionClosed() {
+    	server.removeClient(this);
+    }
+    
     @Override
     protected void acceptFrame(Frame frame) throws IOException {
     	frame.accept(this);
@@ -71,16 +97,38 @@ public class ServerContext extends Context implements ServerVisitor {
     
     @Override
     public void tryLogin(String login, String password) {
-    	server.sendAuthRequest(Objects.requireNonNull(login), Objects.requireNonNull(password), this);
     	pendingLogin = login;
     	guest = false;
+    	server.sendAuthRequest(Objects.requireNonNull(login), Objects.requireNonNull(password), this);
     }
     
     @Override
     public void tryLogin(String login) {
-    	server.sendAuthRequest(Objects.requireNonNull(login), this);
     	pendingLogin = login;
     	guest = true;
+    	server.sendAuthRequest(Objects.requireNonNull(login), this);
+    }
+    
+    @Override
+    public void useEnvelope() {
+    	// The client does not send any frame until the answer, which decides whether the envelope is used.
+    	envelopeAsked = true;
+    }
+    
+    /**
+     * Answers the connection request of the client.<br>
+     * If the connection is accepted and the client asked for the envelope of the protocol v2, the answer accepts it
+     * and the following frames are enveloped in both directions. Otherwise the frames stay without envelope.<br>
+     * Can be called from any thread.
+     * 
+     * @param responceCode The response code, 0 if the connection is accepted.
+     */
+    public void answerConnection(byte responceCode) {
+    	if ( responceCode == 0 && envelopeAsked ) {
+    		queueBeforeEnvelope(new ConnectionAnswerFrame(responceCode, true));
+    	} else {
+    		queueMessage(new ConnectionAnswerFrame(responceCode));
+    	}
     }
     
     @Override
@@ -89,14 +137,41 @@ public class ServerContext extends Context implements ServerVisitor {
     }
 
 	@Override
-	public void broadcastMessage(String message) throws IllegalStateException {
+	public void broadcastMessage(PublicMessageFromCliFrame message) throws IllegalStateException {
+		var login = this.login;
+		if ( Objects.isNull(login) ) {
+			// This client is not authenticated to the server.
+			log(Level.WARNING, "Client not authenticated to the server");
+			return;
+		}
+		
+		server.broadcast(message.relayFrom(encodedLogin), login);
+	}
+
+	@Override
+	public void relayFragment(PublicFragmentFromCliFrame fragment) {
+		var login = this.login;
 		if ( Objects.isNull(login) ) {
 			// This client is not authenticated to the server.
 			log(Level.WARNING, "Client not authenticated to the server");
 			return;
 		}
 		
-		server.broadcast(new PublicMessageFromServFrame(login, message), login);
+		var sequence = fragment.getSequence();
+		
+		// A first fragment always starts a new message. The others must follow the previous one,
+		// and a message can not have more fragments than its maximum size allows.
+		if ( sequence != 0 && (sequence != nextFragment
+				|| sequence >= PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE / PublicFragmentFromCliFrame.FRAGMENT_SIZE) ) {
+			if ( nextFragment != -1 ) {
+				log(Level.WARNING, "Fragment " + sequence + " of " + login + " received while expecting " + nextFragment + ", the end of the message is dropped");
+			}
+			nextFragment = -1;
+			return;
+		}
+		
+		nextFragment = fragment.isContinued() ? sequence + 1 : 0;
+		server.broadcast(fragment.relayFrom(encodedLogin), login);
 	}
 
 	@Override
@@ -0,0 +1,135 @@
+package fr.umlv.chathack.contexts;
+
+import java.util.Objects;
+import java.util.logging.Level;
+
+/**
+ * File transferred on one or several data connections, each one carrying a range of the file : a stripe.</br>
+ * The stripes are transferred in parallel, each one at its own position in the file, so that a transfer
+ * is not bound to the throughput of a single connection on links with a high latency.</br>
+ * </br>
+ * The transfer is over once the connections of all the stripes are closed, and complete if all of them
+ * have been transferred : the end of the transfer is then told once, whatever the number of stripes.
+ */
+public class StripedFile {
+
+	/**
+	 * The maximum number of data connections on which a file is transferred.
+	 */
+	public static final int MAX_STRIPES = 16;
+
+	private final Client client;
+	private final String fileName;
+	private final int stripes;
+	private final String completeMessage; // Told once all the stripes have been transferred.
+	private int opened; // Stripes whose data connection has been attached a context.
+	private int closed;
+	private int completed;
+
+	/**
+	 * Constructor of a file transferred on the given number of data connections.
+	 *
+	 * @param client The client owning the connections.
+	 * @param fileName The name of the file.
+	 * @param stripes The number of data connections.
+	 * @param completeMessage The message told once the whole file has been transferred.
+	 *
+	 * @throws IllegalArgumentException If the number of stripes is not between 1 and MAX_STRIPES.
+	 */
+	public StripedFile(Client client, String fileName, int stripes, String completeMessage) {
+		if ( stripes <= 0 || stripes > MAX_STRIPES ) {
+			throw new IllegalArgumentException("The number of stripes must be between 1 and " + MAX_STRIPES);
+		}
+
+		this.client = Objects.requireNonNull(client);
+		this.fileName = Objects.requireNonNull(fileName);
+		this.stripes = stripes;
+		this.completeMessage = Objects.requireNonNull(completeMessage);
+		this.opened = 0;
+		this.closed = 0;
+		this.completed = 0;
+	}
+
+	/**
+	 * Retrieves the name of the file.
+	 *
+	 * @return The file's name.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Retrieves the number of data connections on which the file is transferred.
+	 *
+	 * @return The number of stripes.
+	 */
+	public int getStripes() {
+		return stripes;
+	}
+
+	/**
+	 * Determines if a context has been attached to the data connection of every stripe.
+	 *
+	 * @return True if all the stripes are opened.
+	 */
+	public boolean isFullyOpened() {
+		return opened == stripes;
+	}
+
+	/**
+	 * Determines if the connections of all the stripes are closed.
+	 *
+	 * @return True if the transfer is over, complete or interrupted.
+	 */
+	public boolean isOver() {
+		return closed == stripes;
+	}
+
+	/**
+	 * Determines if all the stripes have been transferred.
+	 *
+	 * @return True if the whole file has been transferred.
+	 */
+	public boolean isComplete() {
+		return completed == stripes;
+	}
+
+	/**
+	 * Called by the context of a stripe, once attached to its data connection.
+	 *
+	 * @throws IllegalStateException If all the stripes are already opened.
+	 */
+	void stripeOpened() {
+		if ( opened == stripes ) {
+			throw new IllegalStateException("The " + stripes + " stripes of the file " + fileName + " are already opened");
+		}
+
+		opened++;
+	}
+
+	/**
+	 * Called by the context of a stripe, once its connection and its file are closed.<br>
+	 * Tells the end of the transfer when the last stripe is closed.
+	 *
+	 * @param stripe The context of the stripe.
+	 */
+	void stripeClosed(DataContext stripe) {
+		closed++;
+		if ( stripe.isComplete() ) {
+			completed++;
+		}
+
+		if ( !isOver() ) {
+			return;
+		}
+
+		if ( isComplete() ) {
+			System.out.println(completeMessage);
+			client.log(Level.INFO, completeMessage);
+		} else {
+			System.out.println("Transfer of file " + fileName + " interrupted.");
+			client.log(Level.WARNING, "Transfer of file " + fileName + " interrupted, " + completed + " of its " + stripes + " stripes transferred.");
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package fr.umlv.chathack.contexts;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+
+/**
+ * Context of the data connection on which a file is sent.</br>
+ * The file is given to the connection with FileChannel.transferTo : its content is copied
+ * by the kernel from the file to the socket, without going through the memory of the client.
+ */
+public class UploadContext extends DataContext {
+	
+	/**
+	 * Constructor of the upload of a range of a file, sent as soon as the connection is writable.
+	 * 
+	 * @param key The key of the connection, to which this context is attached.
+	 * @param client The client owning the connection.
+	 * @param file The file to send, opened for reading.
+	 * @param striped The file sent, on this connection and maybe others.
+	 * @param start The position in the file of the first byte to send.
+	 * @param end The position in the file following the last byte to send.
+	 */
+	public UploadContext(SelectionKey key, Client client, FileChannel file, StripedFile striped, long start, long end) {
+		super(key, client, file, striped, start, end);
+		
+		key.interestOps(SelectionKey.OP_WRITE);
+	}
+	
+	@Override
+	public void doRead() {
+		// Nothing is read from the recipient once it asked for the file.
+	}
+	
+	@Override
+	public void doWrite() throws IOException {
+		position += file.transferTo(position, end - position, sc);
+		
+		if ( isComplete() ) {
+			close();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package fr.umlv.chathack.contexts;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.frames.PublicFragmentFromCliFrame;
+
+class FragmentAssemblerTest {
+
+	private static byte[] message(int size) {
+		// Characters on two bytes, so that one of them is split between two fragments if the size of a fragment is odd.
+		var bytes = ("x" + "é".repeat(size / 2)).getBytes(StandardCharsets.UTF_8);
+		return Arrays.copyOf(bytes, size);
+	}
+
+	private static byte[] addAll(FragmentAssembler assembler, String sender, byte[] message) {
+		byte[] assembled = null;
+		for (var fragment : PublicFragmentFromCliFrame.split(message)) {
+			assertNull(assembled, "Only the last fragment completes the message");
+			assembled = assembler.add(sender, fragment.getSequence(), fragment.isContinued(), chunk(message, fragment.getSequence()));
+		}
+		return assembled;
+	}
+
+	private static byte[] chunk(byte[] message, int sequence) {
+		var from = sequence * PublicFragmentFromCliFrame.FRAGMENT_SIZE;
+		return Arrays.copyOfRange(message, from, Math.min(from + PublicFragmentFromCliFrame.FRAGMENT_SIZE, message.length));
+	}
+
+	@Test
+	void fragmentsAreReassembled() {
+		var message = message(5 * PublicFragmentFromCliFrame.FRAGMENT_SIZE + 17);
+
+		assertArrayEquals(message, addAll(new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE), "alice", message));
+	}
+
+	@Test
+	void messageOfMaximumSizeIsReassembled() {
+		var message = message(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+
+		assertArrayEquals(message, addAll(new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE), "alice", message));
+	}
+
+	@Test
+	void fragmentsOfSeveralSendersAreReassembledApart() {
+		var assembler = new FragmentAssembler(4 * PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+		var first = message(3 * PublicFragmentFromCliFrame.FRAGMENT_SIZE);
+		var second = message(2 * PublicFragmentFromCliFrame.FRAGMENT_SIZE + 1);
+
+		assertNull(assembler.add("alice", 0, true, chunk(first, 0)));
+		assertNull(assembler.add("bob", 0, true, chunk(second, 0)));
+		assertNull(assembler.add("alice", 1, true, chunk(first, 1)));
+		assertNull(assembler.add("bob", 1, true, chunk(second, 1)));
+		assertArrayEquals(second, assembler.add("bob", 2, false, chunk(second, 2)));
+		assertArrayEquals(first, assembler.add("alice", 2, false, chunk(first, 2)));
+	}
+
+	@Test
+	void outOfSequenceFragmentDropsTheMessage() {
+		var assembler = new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+		var message = message(4 * PublicFragmentFromCliFrame.FRAGMENT_SIZE);
+
+		assertNull(assembler.add("alice", 0, true, chunk(message, 0)));
+		assertThrows(IllegalStateException.class, () -> assembler.add("alice", 2, true, chunk(message, 2)));
+
+		// The fragment which was expected does not continue the dropped message.
+		assertThrows(IllegalStateException.class, () -> assembler.add("alice", 1, true, chunk(message, 1)));
+
+		// A new message can start afterwards.
+		assertArrayEquals(message, addAll(assembler, "alice", message));
+	}
+
+	@Test
+	void fragmentWithoutFirstOneIsRefused() {
+		var assembler = new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+
+		assertThrows(IllegalStateException.class, () -> assembler.add("alice", 1, false, new byte[] { 1 }));
+	}
+
+	@Test
+	void firstFragmentRestartsTheMessage() {
+		var assembler = new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+		var message = message(2 * PublicFragmentFromCliFrame.FRAGMENT_SIZE);
+
+		assertNull(assembler.add("alice", 0, true, new byte[] { 1, 2, 3 }));
+		assertArrayEquals(message, addAll(assembler, "alice", message));
+	}
+
+	@Test
+	void oversizedMessageIsDropped() {
+		var assembler = new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+		var chunk = new byte[PublicFragmentFromCliFrame.FRAGMENT_SIZE];
+		var fragments = PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE / PublicFragmentFromCliFrame.FRAGMENT_SIZE;
+
+		for (var sequence = 0; sequence < fragments; sequence++) {
+			assertNull(assembler.add("alice", sequence, true, chunk));
+		}
+		assertThrows(IllegalStateException.class, () -> assembler.add("alice", fragments, false, new byte[] { 1 }));
+		assertThrows(IllegalStateException.class, () -> assembler.add("alice", fragments + 1, false, new byte[] { 1 }));
+	}
+
+	@Test
+	void incompleteMessagesAreBounded() {
+		var assembler = new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE);
+		var chunk = new byte[PublicFragmentFromCliFrame.FRAGMENT_SIZE];
+
+		assertNull(assembler.add("alice", 0, true, new byte[] { 1 }));
+
+		// The buffer of bob can not grow up to a whole message while the one of alice is held.
+		assertThrows(IllegalStateException.class, () -> {
+			for (var sequence = 0; sequence < PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE / PublicFragmentFromCliFrame.FRAGMENT_SIZE; sequence++) {
+				assembler.add("bob", sequence, true, chunk);
+			}
+		});
+
+		// The message of alice is not affected, and the bytes of bob are released.
+		assertArrayEquals(new byte[] { 1, 2 }, assembler.add("alice", 1, false, new byte[] { 2 }));
+		assertArrayEquals(new byte[] { 3 }, assembler.add("bob", 0, false, new byte[] { 3 }));
+	}
+
+	@Test
+	void assemblerMustHoldOneMessage() {
+		assertThrows(IllegalArgumentException.class, () -> new FragmentAssembler(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE - 1));
+	}
+}
@@ -0,0 +1,440 @@
+package fr.umlv.chathack.generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the codecs of the frames of the ChatHack protocol from their schema.</br>
+ * The generator is run as a single-file program in the phase generate-sources of the module chatHack_resources,
+ * before its sources are compiled : it is given the path of the schema and the directory of the generated sources.
+ * It generates, for each frame :
+ * <ul>
+ * <li>a reader, decoding the fields one after the other with a case of a switch per field, which resumes where the previous
+ * call stopped when the frame is split across several reads ;</li>
+ * <li>the methods writing the frame directly in a buffer and computing its size, in the class FrameCodecs.</li>
+ * </ul>
+ * The constructors of the readers are listed by opCode in the class ReaderFactories.
+ */
+public class FrameCodecGenerator {
+	private static final String FRAMES_PACKAGE = "fr.umlv.chathack.resources.frames";
+	private static final String READERS_PACKAGE = "fr.umlv.chathack.resources.readers";
+
+	private static final Pattern FRAME = Pattern.compile("(\\d+)\\s+(\\w+Frame)");
+	private static final Pattern FIELD = Pattern.compile("(byte|bool|int|long|string|utf8|blob\\((\\d+)\\)|bytes\\[(.+)\\])\\s+(\\w+)(?:\\s+if\\s+(.+))?");
+	private static final Set<String> RESERVED_NAMES = Set.of("bb", "offset", "start", "pos", "size", "status", "fieldIndex"); // Names used by the generated code.
+
+	/**
+	 * Type of a field, as written in the schema.
+	 */
+	private enum Type {
+		BYTE("byte", "byte", "Byte.BYTES"),
+		BOOL("boolean", "boolean", "Byte.BYTES"),
+		INT("int", "int", "Integer.BYTES"),
+		LONG("long", "long", "Long.BYTES"),
+		STRING("String", "byte[]", null),
+		UTF8("byte[]", "byte[]", null),
+		BLOB("byte[]", "byte[]", null),
+		BYTES("byte[]", "byte[]", null);
+
+		private final String readType; // The type of the field once read.
+		private final String writeType; // The type of the field given to the encoder.
+		private final String size; // The size of the field, null if it is not fixed.
+
+		private Type(String readType, String writeType, String size) {
+			this.readType = readType;
+			this.writeType = writeType;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Field of a frame.
+	 *
+	 * @param type The type of the field.
+	 * @param name The name of the field.
+	 * @param argument The maximum size of a blob or the size of bytes, null for the other types.
+	 * @param condition The condition for the field to be sent, null if it is always sent.
+	 */
+	private record Field(Type type, String name, String argument, String condition) {}
+
+	/**
+	 * Frame of the schema.
+	 *
+	 * @param opCode The opCode of the frame.
+	 * @param className The simple name of the class of the frame.
+	 * @param fields The fields of the frame, in the order they are sent.
+	 */
+	private record FrameSchema(int opCode, String className, List<Field> fields) {
+		/**
+		 * Retrieves the name of the frame without the suffix 'Frame', used to name its codecs.
+		 *
+		 * @return The base name of the codecs.
+		 */
+		String baseName() {
+			return className.substring(0, className.length() - "Frame".length());
+		}
+	}
+
+	private FrameCodecGenerator() {
+		// Only static methods.
+	}
+
+	/**
+	 * Generates the codecs of the frames.
+	 *
+	 * @param args The path of the schema, then the directory in which the sources are generated.
+	 *
+	 * @throws IOException If the schema can not be read or a source can not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if ( args.length != 2 ) {
+			throw new IllegalArgumentException("Usage : FrameCodecGenerator <schema> <generated sources directory>");
+		}
+
+		var schema = Path.of(args[0]);
+		var output = Path.of(args[1]);
+		var frames = parse(schema);
+
+		for (var frame : frames) {
+			write(output, READERS_PACKAGE + "." + frame.baseName() + "Reader", reader(frame));
+		}
+		write(output, READERS_PACKAGE + ".ReaderFactories", factories(frames));
+		write(output, FRAMES_PACKAGE + ".FrameCodecs", codecs(frames));
+	}
+
+	/**
+	 * Reads the frames of the schema.
+	 *
+	 * @param schema The path of the schema.
+	 *
+	 * @return The frames, ordered by opCode.
+	 *
+	 * @throws IOException If the schema can not be read.
+	 * @throws IllegalArgumentException If a line of the schema is invalid, if the opCodes are not consecutive from 0
+	 * or if a field is named like a variable of the generated code.
+	 */
+	private static List<FrameSchema> parse(Path schema) throws IOException {
+		var frames = new ArrayList<FrameSchema>();
+		var lineNumber = 0;
+
+		for (var line : Files.readAllLines(schema)) {
+			lineNumber++;
+			var content = line.strip();
+			if ( content.isEmpty() || content.startsWith("#") ) {
+				continue;
+			}
+
+			var frame = FRAME.matcher(content);
+			if ( frame.matches() ) {
+				var opCode = Integer.parseInt(frame.group(1));
+				if ( opCode != frames.size() ) {
+					throw new IllegalArgumentException("line " + lineNumber + ", the opCode " + frames.size() + " is expected");
+				}
+				frames.add(new FrameSchema(opCode, frame.group(2), new ArrayList<>()));
+				continue;
+			}
+
+			var field = FIELD.matcher(content);
+			if ( !field.matches() || frames.isEmpty() ) {
+				throw new IllegalArgumentException("line " + lineNumber + ", a frame or a field is expected");
+			}
+
+			var declaration = field.group(1);
+			var type = declaration.startsWith("blob") ? Type.BLOB
+					: declaration.startsWith("bytes") ? Type.BYTES
+					: Type.valueOf(declaration.toUpperCase());
+			var argument = type == Type.BLOB ? field.group(2) : field.group(3);
+			if ( RESERVED_NAMES.contains(field.group(4)) ) {
+				throw new IllegalArgumentException("line " + lineNumber + ", the name " + field.group(4) + " is used by the generated code");
+			}
+
+			frames.get(frames.size() - 1).fields().add(new Field(type, field.group(4), argument, field.group(5)));
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Writes a generated source file, replacing the one of a previous build.
+	 *
+	 * @param output The directory of the generated sources.
+	 * @param name The qualified name of the class.
+	 * @param source The source of the class.
+	 *
+	 * @throws IOException If the file can not be written.
+	 */
+	private static void write(Path output, String name, String source) throws IOException {
+		var file = output.resolve(name.replace('.', '/') + ".java");
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, source);
+	}
+
+	/**
+	 * Generates the reader of a frame.
+	 *
+	 * @param frame The frame.
+	 *
+	 * @return The source of the reader.
+	 */
+	private static String reader(FrameSchema frame) {
+		var fields = frame.fields();
+		var src = new StringBuilder();
+
+		src.append("package ").append(READERS_PACKAGE).append(";\n\n");
+		src.append("import java.nio.ByteBuffer;\n\n");
+		src.append("import ").append(FRAMES_PACKAGE).append('.').append(frame.className()).append(";\n\n");
+		src.append("/**\n * Reader of the frames ").append(frame.className()).append(", of opCode ").append(frame.opCode())
+			.append(".</br>\n * Generated from the schema of the frames, do not edit.\n */\n");
+		src.append("public class ").append(frame.baseName()).append("Reader implements Reader {\n");
+		if ( fields.isEmpty() ) {
+			emptyReader(src, frame);
+			return src.toString();
+		}
+		src.append("\tprivate static final int FIELDS = ").append(fields.size()).append(";\n\n");
+
+		var strings = fields.stream().anyMatch(field -> field.type() == Type.STRING);
+		var utf8 = fields.stream().anyMatch(field -> field.type() == Type.UTF8);
+		if ( strings ) {
+			src.append("\tprivate final StringReader stringReader = new StringReader();\n");
+		}
+		if ( utf8 ) {
+			src.append("\tprivate final EncodedStringReader utf8Reader = new EncodedStringReader();\n");
+		}
+		for (var field : fields) {
+			if ( field.type() == Type.BLOB ) {
+				src.append("\tprivate final EncodedStringReader ").append(field.name()).append("Reader = new EncodedStringReader(0, ")
+					.append(field.argument()).append(");\n");
+			}
+		}
+		src.append("\n\tprivate int fieldIndex; // Index of the field being read, FIELDS once the frame is read.\n");
+		for (var field : fields) {
+			src.append("\tprivate ").append(field.type().readType).append(' ').append(field.name()).append(";\n");
+		}
+
+		src.append("\n\t@Override\n\tpublic ProcessStatus process(ByteBuffer bb) {\n");
+		src.append("\t\tif (fieldIndex == FIELDS) {\n\t\t\tthrow new IllegalStateException();\n\t\t}\n");
+		if ( strings || utf8 || fields.stream().anyMatch(field -> field.type() == Type.BLOB) ) {
+			src.append("\t\tProcessStatus status;\n");
+		}
+		// The fields are read in a loop, each case reading one of them : a frame split across several reads
+		// resumes at the field not read yet.
+		src.append("\t\twhile (fieldIndex < FIELDS) {\n");
+		src.append("\t\t\tswitch (fieldIndex) {\n");
+		for (var i = 0; i < fields.size(); i++) {
+			var field = fields.get(i);
+			var indent = Objects.isNull(field.condition()) ? "\t\t\t\t" : "\t\t\t\t\t";
+
+			src.append("\t\t\tcase ").append(i).append(" -> {\n");
+			if ( !Objects.isNull(field.condition()) ) {
+				src.append("\t\t\t\tif (").append(field.condition()).append(") {\n");
+			}
+			readField(src, field, indent);
+			if ( !Objects.isNull(field.condition()) ) {
+				src.append("\t\t\t\t}\n");
+			}
+			src.append("\t\t\t}\n");
+		}
+		src.append("\t\t\tdefault -> throw new IllegalStateException();\n");
+		src.append("\t\t\t}\n");
+		src.append("\t\t\tfieldIndex++;\n");
+		src.append("\t\t}\n");
+		src.append("\t\treturn ProcessStatus.DONE;\n\t}\n");
+
+		src.append("\n\t@Override\n\tpublic Object get() {\n");
+		src.append("\t\tif (fieldIndex != FIELDS) {\n\t\t\tthrow new IllegalStateException();\n\t\t}\n");
+		src.append("\t\treturn new ").append(frame.className()).append('(');
+		src.append(String.join(", ", fields.stream().map(Field::name).toList()));
+		src.append(");\n\t}\n");
+
+		src.append("\n\t@Override\n\tpublic void reset() {\n\t\tfieldIndex = 0;\n");
+		if ( strings ) {
+			src.append("\t\tstringReader.reset();\n");
+		}
+		if ( utf8 ) {
+			src.append("\t\tutf8Reader.reset();\n");
+		}
+		for (var field : fields) {
+			if ( field.type() == Type.BLOB ) {
+				src.append("\t\t").append(field.name()).append("Reader.reset();\n");
+			}
+			if ( !Objects.isNull(field.condition()) ) {
+				// A field not sent keeps its default value.
+				src.append("\t\t").append(field.name()).append(" = ").append(defaultValue(field.type())).append(";\n");
+			}
+		}
+		src.append("\t}\n}\n");
+
+		return src.toString();
+	}
+
+	/**
+	 * Generates the body of the reader of a frame without field, read as soon as its opCode is.
+	 *
+	 * @param src The source of the reader.
+	 * @param frame The frame.
+	 */
+	private static void emptyReader(StringBuilder src, FrameSchema frame) {
+		src.append("\tprivate boolean done; // True once the frame is read.\n");
+
+		src.append("\n\t@Override\n\tpublic ProcessStatus process(ByteBuffer bb) {\n");
+		src.append("\t\tif (done) {\n\t\t\tthrow new IllegalStateException();\n\t\t}\n");
+		src.append("\t\tdone = true;\n\t\treturn ProcessStatus.DONE;\n\t}\n");
+
+		src.append("\n\t@Override\n\tpublic Object get() {\n");
+		src.append("\t\tif (!done) {\n\t\t\tthrow new IllegalStateException();\n\t\t}\n");
+		src.append("\t\treturn new ").append(frame.className()).append("();\n\t}\n");
+
+		src.append("\n\t@Override\n\tpublic void reset() {\n\t\tdone = false;\n\t}\n}\n");
+	}
+
+	/**
+	 * Generates the code reading a field, returning if its bytes have not been received.
+	 *
+	 * @param src The source of the reader.
+	 * @param field The field.
+	 * @param indent The indentation of the code.
+	 */
+	private static void readField(StringBuilder src, Field field, String indent) {
+		switch ( field.type() ) {
+			case BYTE, BOOL, INT, LONG -> {
+				src.append(indent).append("if (bb.remaining() < ").append(field.type().size).append(") {\n");
+				src.append(indent).append("\treturn ProcessStatus.REFILL;\n").append(indent).append("}\n");
+				src.append(indent).append(field.name()).append(" = ").append(switch ( field.type() ) {
+					case BYTE -> "bb.get()";
+					case BOOL -> "bb.get() != 0";
+					case INT -> "bb.getInt()";
+					default -> "bb.getLong()";
+				}).append(";\n");
+			}
+			case STRING, UTF8, BLOB -> {
+				var reader = switch ( field.type() ) {
+					case STRING -> "stringReader";
+					case UTF8 -> "utf8Reader";
+					default -> field.name() + "Reader";
+				};
+				src.append(indent).append("status = ").append(reader).append(".process(bb);\n");
+				src.append(indent).append("if (status != ProcessStatus.DONE) {\n");
+				src.append(indent).append("\treturn status;\n").append(indent).append("}\n");
+				src.append(indent).append(field.name()).append(" = (").append(field.type().readType).append(") ")
+					.append(reader).append(".get();\n");
+				src.append(indent).append(reader).append(".reset();\n");
+			}
+			case BYTES -> {
+				src.append(indent).append("if (bb.remaining() < (").append(field.argument()).append(")) {\n");
+				src.append(indent).append("\treturn ProcessStatus.REFILL;\n").append(indent).append("}\n");
+				src.append(indent).append(field.name()).append(" = new byte[").append(field.argument()).append("];\n");
+				src.append(indent).append("bb.get(").append(field.name()).append(");\n");
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the default value of a field, as written in Java.
+	 *
+	 * @param type The type of the field.
+	 *
+	 * @return The default value.
+	 */
+	private static String defaultValue(Type type) {
+		return switch ( type ) {
+			case BYTE, INT, LONG -> "0";
+			case BOOL -> "false";
+			default -> "null";
+		};
+	}
+
+	/**
+	 * Generates the list of the constructors of the readers, indexed by opCode.
+	 *
+	 * @param frames The frames, ordered by opCode.
+	 *
+	 * @return The source of the class ReaderFactories.
+	 */
+	private static String factories(List<FrameSchema> frames) {
+		var src = new StringBuilder();
+
+		src.append("package ").append(READERS_PACKAGE).append(";\n\n");
+		src.append("import java.util.List;\nimport java.util.function.Supplier;\n\n");
+		src.append("/**\n * Constructors of the readers of the frames.</br>\n * Generated from the schema of the frames, do not edit.\n */\n");
+		src.append("final class ReaderFactories {\n\n");
+		src.append("\t/**\n\t * Constructors of the readers, the index of a constructor is the opCode of the frames its reader reads.\n\t */\n");
+		src.append("\tstatic final List<Supplier<Reader>> FACTORIES = List.of(");
+		src.append(String.join(",\n\t\t\t", frames.stream().map(frame -> frame.baseName() + "Reader::new").toList()));
+		src.append(");\n\n\tprivate ReaderFactories() {\n\t\t// Only constants.\n\t}\n}\n");
+
+		return src.toString();
+	}
+
+	/**
+	 * Generates the methods writing the frames and computing their size.
+	 *
+	 * @param frames The frames, ordered by opCode.
+	 *
+	 * @return The source of the class FrameCodecs.
+	 */
+	private static String codecs(List<FrameSchema> frames) {
+		var src = new StringBuilder();
+
+		src.append("package ").append(FRAMES_PACKAGE).append(";\n\n");
+		src.append("import java.nio.ByteBuffer;\n\n");
+		src.append("/**\n * Writes the frames of the ChatHack protocol, field by field with FrameEncoder.</br>\n");
+		src.append(" * The strings are given encoded in UTF-8. Generated from the schema of the frames, do not edit.\n */\n");
+		src.append("final class FrameCodecs {\n\n\tprivate FrameCodecs() {\n\t\t// Only static methods.\n\t}\n");
+
+		for (var frame : frames) {
+			var parameters = String.join(", ", frame.fields().stream().map(field -> field.type().writeType + " " + field.name()).toList());
+
+			src.append("\n\t/**\n\t * Writes a ").append(frame.className()).append(", see Frame.writeTo(ByteBuffer, int).\n\t */\n");
+			src.append("\tstatic int write").append(frame.baseName()).append("(ByteBuffer bb, int offset")
+				.append(parameters.isEmpty() ? "" : ", " + parameters).append(") {\n");
+			src.append("\t\tvar start = bb.position();\n");
+			src.append("\t\tvar pos = FrameEncoder.putByte(bb, offset, 0, (byte) ").append(frame.opCode()).append(");\n");
+			for (var field : frame.fields()) {
+				var indent = Objects.isNull(field.condition()) ? "\t\t" : "\t\t\t";
+				if ( !Objects.isNull(field.condition()) ) {
+					src.append("\t\tif (").append(field.condition()).append(") {\n");
+				}
+				src.append(indent).append("pos = FrameEncoder.").append(switch ( field.type() ) {
+					case BYTE -> "putByte(bb, offset, pos, " + field.name() + ")";
+					case BOOL -> "putByte(bb, offset, pos, (byte) (" + field.name() + " ? 1 : 0))";
+					case INT -> "putInt(bb, offset, pos, " + field.name() + ")";
+					case LONG -> "putLong(bb, offset, pos, " + field.name() + ")";
+					case STRING, UTF8, BLOB -> "putString(bb, offset, pos, " + field.name() + ")";
+					case BYTES -> "putBytes(bb, offset, pos, " + field.name() + ", " + field.name() + ".length)";
+				}).append(";\n");
+				if ( !Objects.isNull(field.condition()) ) {
+					src.append("\t\t}\n");
+				}
+			}
+			src.append("\t\treturn offset + bb.position() - start;\n\t}\n");
+
+			src.append("\n\t/**\n\t * Computes the size of a ").append(frame.className()).append(", see Frame.size().\n\t */\n");
+			src.append("\tstatic int size").append(frame.baseName()).append('(').append(parameters).append(") {\n");
+			src.append("\t\tvar size = Byte.BYTES;\n");
+			for (var field : frame.fields()) {
+				var indent = Objects.isNull(field.condition()) ? "\t\t" : "\t\t\t";
+				if ( !Objects.isNull(field.condition()) ) {
+					src.append("\t\tif (").append(field.condition()).append(") {\n");
+				}
+				src.append(indent).append("size += ").append(switch ( field.type() ) {
+					case STRING, UTF8, BLOB -> "FrameEncoder.stringSize(" + field.name() + ")";
+					case BYTES -> field.name() + ".length";
+					default -> field.type().size;
+				}).append(";\n");
+				if ( !Objects.isNull(field.condition()) ) {
+					src.append("\t\t}\n");
+				}
+			}
+			src.append("\t\treturn size;\n\t}\n");
+		}
+		src.append("}\n");
+
+		return src.toString();
+	}
+}
@@ -2,11 +2,14 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class AuthBddFrame extends AbstractFrame {
 	private long id;
 	private String login;
+	private byte[] encodedLogin; // The login encoded in UTF-8 on first use.
 	private String pass;
+	private byte[] encodedPass; // The password encoded in UTF-8 on first use.
 
 	public AuthBddFrame(long id, String login, String pass) {
 		this.id = id;
@@ -19,33 +22,43 @@ public class AuthBddFrame extends AbstractFrame {
 		// TODO
 	}
 
+	/**
+	 * Retrieves the login encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the login.
+	 */
+	private byte[] encodedLogin() {
+		if ( Objects.isNull(encodedLogin) ) {
+			encodedLogin = login.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedLogin;
+	}
+
+	/**
+	 * Retrieves the password encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the password.
+	 */
+	private byte[] encodedPass() {
+		if ( Objects.isNull(encodedPass) ) {
+			encodedPass = pass.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedPass;
+	}
+
 	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var loginEncode = cs.encode(login);
-		var passEncode = cs.encode(pass);
-		bb.put((byte) 1);
-		bb.putLong(id);
-
-		bb.putInt(loginEncode.remaining());
-		bb.put(loginEncode);
-		
-		bb.putInt(passEncode.remaining());
-		bb.put(passEncode);
-
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	public int writeTo(ByteBuffer bb, int offset) {
+		var start = bb.position();
+		var pos = FrameEncoder.putByte(bb, offset, 0, (byte) 1);
+		pos = FrameEncoder.putLong(bb, offset, pos, id);
+		pos = FrameEncoder.putString(bb, offset, pos, encodedLogin());
+		FrameEncoder.putString(bb, offset, pos, encodedPass());
+		return offset + bb.position() - start;
 	}
 
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		return cs.encode(login).remaining() + cs.encode(pass).remaining() + 1 + Long.BYTES + 8;
-		
-
+		return 1 + Long.BYTES + FrameEncoder.stringSize(encodedLogin()) + FrameEncoder.stringSize(encodedPass());
 	}
 
 }
@@ -1,5 +1,7 @@
 package fr.umlv.chathack.resources.frames;
 
+import java.nio.ByteBuffer;
+
 
 public class BddPositiveResponceFrame extends AbstractFrame {
 	private long id;
@@ -14,7 +16,7 @@ public class BddPositiveResponceFrame extends AbstractFrame {
 	}
 
 	@Override
-	public byte[] getBytes() {
+	public int writeTo(ByteBuffer bb, int offset) {
 		throw new IllegalStateException("this methos should never be called");
 	}
 
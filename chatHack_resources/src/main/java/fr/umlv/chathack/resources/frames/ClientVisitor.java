@@ -21,6 +21,14 @@ public interface ClientVisitor {
 	 */
 	void abortPrivateCommunicationRequest(String login);
 	
+	/**
+	 * Called once the server answered the connection request.
+	 * 
+	 * @param enveloped True if the server accepted the envelope of the protocol v2 :
+	 * the following frames are then read and sent enveloped.
+	 */
+	void connectionAnswered(boolean enveloped);
+	
     /**
      * Connect the client to the server corresponding to another client's private server.<br>
      * 
@@ -37,8 +45,17 @@ public interface ClientVisitor {
      * 
      * @param id The token ID.
      * @param login The login.
+     * @param chunkSize The size of the file chunks offered by the client.
      */
-    void tryAuthenticate(int id, String login);
+    void tryAuthenticate(int id, String login, int chunkSize);
+    
+    /**
+     * Called once the private server answered the authentication request of the client.
+     * 
+     * @param accepted True if the authentication is accepted.
+     * @param chunkSize The size of the file chunks agreed on by the server, if accepted.
+     */
+    void privateAuthAnswered(boolean accepted, int chunkSize);
 
     /**
      * Print a private message, if the client is authenticated.
@@ -60,8 +77,23 @@ public interface ClientVisitor {
 	 * @param fileName The file name.
 	 * @param fileSize The full size of the file.
 	 * @param fileID The file identifier.
+	 * @param dataPort The port of the private server of the sender on which the file is downloaded,
+	 * 0 if the chunks of the file follow on this connection.
+	 * @param stripes The number of data connections on which the file is downloaded.
+	 */
+	void initFileDownload(String fileName, long fileSize, int fileID, int dataPort, int stripes);
+	
+	/**
+	 * Sends a range of the content of a file on this connection, which becomes a data connection.
+	 * 
+	 * @param login The login of the client asking for the file.
+	 * @param tokenID The token ID of the private communication with the client.
+	 * @param fileID The file identifier.
+	 * @param position The position in the file of the first byte to send.
+	 * @param length The number of bytes to send.
+	 * @param stripes The number of data connections opened for the file.
 	 */
-	void initFileDownload(String fileName, int fileSize, int fileID);
+	void uploadFile(String login, int tokenID, int fileID, long position, long length, int stripes);
 	
 	/**
 	 * Download a file, chunk by chunk.
@@ -70,4 +102,14 @@ public interface ClientVisitor {
 	 * @param data The 'chunk data' of the file.
 	 */
 	void downloadFile(int fileID, byte[] data);
+	
+	/**
+	 * Receive a fragment of a long public message, and print the message once all its fragments are received.
+	 * 
+	 * @param sender The login of the client who sent the message.
+	 * @param sequence The number of the fragment in its message, starting from 0.
+	 * @param continued True if other fragments of the message follow this one.
+	 * @param chunk The bytes of the fragment, encoded in UTF-8.
+	 */
+	void receivePublicFragment(String sender, int sequence, boolean continued, byte[] chunk);
 }
@@ -3,41 +3,47 @@ package fr.umlv.chathack.resources.frames;
 import java.nio.ByteBuffer;
 
 public class ConnectionAnswerFrame extends AbstractFrame {
+	/**
+	 * Bit of the response code set when the server accepts the envelope of the protocol v2 asked by the client.
+	 */
+	public static final byte ENVELOPE_FLAG = 4;
 
 	private byte responceCode;
 	
 	public ConnectionAnswerFrame(byte responceCode) {
 		this.responceCode = responceCode;
 	}
+	
+	/**
+	 * Constructor of an answer to a connection request.</br>
+	 * The answer itself is sent without envelope : the client switches to the envelope once it has read it.
+	 * 
+	 * @param responceCode The response code, 0 if the connection is accepted.
+	 * @param enveloped True if the frames following this one are enveloped (see FrameEncoder.writeEnveloped).
+	 */
+	public ConnectionAnswerFrame(byte responceCode, boolean enveloped) {
+		this((byte) (responceCode | (enveloped ? ENVELOPE_FLAG : 0)));
+	}
 
 	@Override
 	public int size() {
-		return 2;
+		return FrameCodecs.sizeConnectionAnswer(responceCode);
 	}
 
 	@Override
-	public byte[] getBytes() {
-		var bb = ByteBuffer.allocate(1024);
-		
-		bb.put((byte) 8);
-		
-		bb.put((byte) responceCode);
-
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
-	
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeConnectionAnswer(bb, offset, responceCode);
 	}
 
 	@Override
 	public void accept(ClientVisitor client) {
-		switch ( responceCode ) {
+		switch ( responceCode & ~ENVELOPE_FLAG ) {
 			case 0 : System.out.println("Connection accepted by the server"); break;
 			case 1 : System.out.println("Connection refused by the server : Invalid logins"); break;
 			case 2 : System.out.println("Connection refused by the server : Login already existing"); break;
 			case 3 : System.out.println("Connection refused by the server : The server does not allow new clients"); break;
 		}
+		client.connectionAnswered((responceCode & ENVELOPE_FLAG) != 0);
 	}
 
 	
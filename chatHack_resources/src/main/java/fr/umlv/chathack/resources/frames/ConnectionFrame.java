@@ -2,10 +2,14 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class ConnectionFrame extends AbstractFrame {
+
 	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
 	private String pass;
+	private byte[] encodedPass; // The password encoded in UTF-8 on first use.
 	private boolean passNeed;
 
 	public ConnectionFrame(String name, String pass, boolean passNeed) {
@@ -18,6 +22,17 @@ public class ConnectionFrame extends AbstractFrame {
 		this(name, "", false);
 	}
 
+	/**
+	 * Constructor of a frame read from the network.
+	 *
+	 * @param passCode The password code, 0 if the client has a password.
+	 * @param name The login.
+	 * @param pass The password, null if the client has none.
+	 */
+	public ConnectionFrame(byte passCode, String name, String pass) {
+		this(name, Objects.isNull(pass) ? "" : pass, passCode == 0);
+	}
+
 	@Override
 	public void accept(ServerVisitor server) {
 		if ( passNeed ) {
@@ -27,40 +42,47 @@ public class ConnectionFrame extends AbstractFrame {
 		}
 	}
 
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var nameEncode = cs.encode(name);
-		bb.put((byte) 0);
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
 
-		if (passNeed) {
-			bb.put((byte) 0);
-			bb.putInt(nameEncode.remaining());
-			bb.put(nameEncode);
-			var passEncode = cs.encode(pass);
-			bb.putInt(passEncode.remaining());
-			bb.put(passEncode);
-		} else {
-			bb.put((byte) 1);
-			bb.putInt(nameEncode.remaining());
-			bb.put(nameEncode);
+	/**
+	 * Retrieves the password encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the password.
+	 */
+	private byte[] encodedPass() {
+		if ( Objects.isNull(encodedPass) ) {
+			encodedPass = pass.getBytes(StandardCharsets.UTF_8);
 		}
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+		return encodedPass;
+	}
+
+	/**
+	 * Computes the password code sent before the login.
+	 * 
+	 * @return The password code.
+	 */
+	private byte passCode() {
+		return (byte) (passNeed ? 0 : 1);
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeConnection(bb, offset, passCode(), encodedName(), passNeed ? encodedPass() : null);
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		if (passNeed) {
-			return cs.encode(name).remaining() + cs.encode(pass).remaining() + 2 + 8;
-		} else {
-			return cs.encode(name).remaining() + 2 + 4;
-		}
-
+		return FrameCodecs.sizeConnection(passCode(), encodedName(), passNeed ? encodedPass() : null);
 	}
 
 }
@@ -4,15 +4,34 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class DlFileFrame extends AbstractFrame {
+
+	/**
+	 * The size of the chunks sent to a client which did not give its own, in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * The maximum size of a chunk, in bytes. It must be the size of the data in the schema of the frames.
+	 */
+	public static final int MAX_CHUNK_SIZE = 64 * 1024;
+
 	private int fileId;
-	private int dataSize;
 	private byte data[];
 	
 	
 	public DlFileFrame(int fileId, int dataSize, byte[] data) {
+		this(fileId, Arrays.copyOfRange(data, 0, dataSize));
+	}
+
+	/**
+	 * Constructor of a frame keeping the given array.
+	 *
+	 * @param fileId The file identifier.
+	 * @param data The chunk of the file, which must not be modified afterwards.
+	 */
+	public DlFileFrame(int fileId, byte[] data) {
 		this.fileId = fileId;
-		this.dataSize = dataSize;
-		this.data = Arrays.copyOfRange(data, 0, dataSize);
+		this.data = data;
 	}
 	
 	
@@ -23,26 +42,18 @@ public class DlFileFrame extends AbstractFrame {
 	}
 
 	@Override
-	public byte[] getBytes() {
-		var bb = ByteBuffer.allocate(2048);
-
-		bb.put((byte) 7);
-
-		bb.putInt(fileId);
-		
-		bb.putInt(dataSize);
-		
-		bb.put(data);
+	public boolean isBulk() {
+		return true;
+	}
 
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeDlFile(bb, offset, fileId, data);
 	}
 	
 	@Override
 	public int size() {
-		return dataSize + 1 + 4 + 4;
+		return FrameCodecs.sizeDlFile(fileId, data);
 	}
 	
 		
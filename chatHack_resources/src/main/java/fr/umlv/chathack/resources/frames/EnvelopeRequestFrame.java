@@ -0,0 +1,29 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Request of the envelope of the protocol v2, sent by a client to the server right after its ConnectionFrame.</br>
+ * The frame is only its opCode, so that a server which does not know it ignores it without losing the following bytes.
+ * The client then sends no other frame until the server answers its connection : if the server sets the bit
+ * ConnectionAnswerFrame.ENVELOPE_FLAG of its answer, the frames following the answer are enveloped in both directions
+ * (see FrameEncoder.writeEnveloped), otherwise none is.
+ */
+public class EnvelopeRequestFrame extends AbstractFrame {
+
+	@Override
+	public void accept(ServerVisitor server) {
+		server.useEnvelope();
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeEnvelopeRequest(bb, offset);
+	}
+
+	@Override
+	public int size() {
+		return FrameCodecs.sizeEnvelopeRequest();
+	}
+
+}
@@ -0,0 +1,72 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Frame sent by a client on a new connection to the private server of another client,
+ * asking for a range of the content of a file announced by an InitSendFileFrame.</br>
+ * It is the only frame sent on this data connection : the content of the file follows
+ * in the other direction, without frames.</br>
+ * A download interrupted with the connection is resumed by asking, when the same file is announced again,
+ * for its content from the number of bytes already written by the recipient.</br>
+ * A file downloaded on several data connections is asked for by one frame on each of them,
+ * each frame giving the number of connections so the sender knows when all of them are opened.
+ */
+public class FileRequestFrame extends AbstractFrame {
+	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
+	private int tokenId;
+	private int fileId;
+	private long position; // The position in the file of the first byte to send.
+	private long length; // The number of bytes to send.
+	private int stripes; // The number of data connections opened for the file.
+	
+	
+	/**
+	 * Constructor of the frame asking for the content of a file.
+	 * 
+	 * @param name The login of the client asking for the file.
+	 * @param tokenId The token ID of the private communication with the sender.
+	 * @param fileId The file identifier given by the sender.
+	 * @param position The position in the file of the first byte to send.
+	 * @param length The number of bytes to send.
+	 * @param stripes The number of data connections opened for the file, 1 unless the file is striped.
+	 */
+	public FileRequestFrame(String name, int tokenId, int fileId, long position, long length, int stripes) {
+		this.name = name;
+		this.tokenId = tokenId;
+		this.fileId = fileId;
+		this.position = position;
+		this.length = length;
+		this.stripes = stripes;
+	}
+
+	@Override
+	public void accept(ClientVisitor client) {
+		client.uploadFile(name, tokenId, fileId, position, length, stripes);
+	}
+
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeFileRequest(bb, offset, encodedName(), tokenId, fileId, position, length, stripes);
+	}
+
+	@Override
+	public int size() {
+		return FrameCodecs.sizeFileRequest(encodedName(), tokenId, fileId, position, length, stripes);
+	}
+}
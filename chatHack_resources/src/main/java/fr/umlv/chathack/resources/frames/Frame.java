@@ -1,6 +1,7 @@
 package fr.umlv.chathack.resources.frames;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface Frame {
 	
@@ -12,11 +13,30 @@ public interface Frame {
 	int size();
 	
 	/**
-	 * Retrieves the bytes constituting the frame
+	 * Retrieves the bytes constituting the frame.<br>
+	 * It allocates a new array : writeTo(bb, offset) must be preferred to send the frame.
 	 * 
 	 * @return The content bytes of the frame
 	 */
-	byte[] getBytes();
+	default byte[] getBytes() {
+		var bb = ByteBuffer.allocate(size());
+		writeTo(bb, 0);
+		return bb.array();
+	}
+	
+	/**
+	 * Writes the bytes constituting the frame directly in the given buffer,
+	 * starting from the byte at position 'offset' in the frame, as many as the buffer can hold.<br>
+	 * A frame larger than the space left in the buffer is then written in several calls,
+	 * each one given the offset returned by the previous one. The frame is entirely written
+	 * once the returned offset equals size().
+	 * 
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The number of bytes of the frame already written.
+	 * 
+	 * @return The number of bytes of the frame written so far.
+	 */
+	int writeTo(ByteBuffer bb, int offset);
 	
 	/**
 	 * Retrieves the time at which the frame was created, in nanoseconds.
@@ -25,6 +45,26 @@ public interface Frame {
 	 */
 	long getCreationTime();
 	
+	/**
+	 * Determines if the frame can be dropped without breaking the protocol
+	 * when its recipient does not read fast enough.
+	 * 
+	 * @return True if the frame can be dropped, false by default.
+	 */
+	default boolean isSheddable() {
+		return false;
+	}
+	
+	/**
+	 * Determines if the frame belongs to a bulk transfer (e.g a file chunk),
+	 * which must not delay the chat frames sent on the same connection.
+	 * 
+	 * @return True if the frame is bulk traffic, false by default.
+	 */
+	default boolean isBulk() {
+		return false;
+	}
+	
 	/**
 	 * Performs the frame action on the given client.
 	 * 
@@ -0,0 +1,174 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the fields of a frame directly in a buffer, without intermediate buffer.</br>
+ * A frame is written field by field, each method receiving the position of the field in
+ * the encoded frame and returning the position of the next field. Only the bytes located
+ * after 'offset' are written, as many as the buffer can hold : a frame can then be written
+ * in several calls, each one resuming where the previous one stopped.</br>
+ * </br>
+ * Strings are written encoded in UTF-8 and prefixed by their length in bytes, on an int.
+ * The frames encode each of their strings once, on first use, and keep the bytes : a frame
+ * written several times or whose size is asked repeatedly never encodes a string twice.
+ * The first use is the call to size() made by the thread queuing the frame, so the bytes
+ * are published to the writing thread by the queue.</br>
+ * </br>
+ * Once the envelope of the protocol v2 is used, a frame is written as [opCode][length][payload] by writeEnveloped(),
+ * the length being the number of bytes of the payload on an unsigned int : a reader knows where the frame ends
+ * before decoding it, so an unknown or invalid frame is skipped without losing the following ones.
+ */
+public final class FrameEncoder {
+
+	/**
+	 * The number of bytes added by the envelope of the protocol v2 to a frame.
+	 */
+	public static final int ENVELOPE_HEADER_SIZE = Integer.BYTES;
+
+	private FrameEncoder() {
+		// Only static methods.
+	}
+
+	/**
+	 * Writes a byte field.
+	 *
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the frame of the first byte to write.
+	 * @param pos The position of the field in the frame.
+	 * @param value The value of the field.
+	 *
+	 * @return The position of the next field in the frame.
+	 */
+	static int putByte(ByteBuffer bb, int offset, int pos, byte value) {
+		if ( offset <= pos && bb.hasRemaining() ) {
+			bb.put(value);
+		}
+
+		return pos + 1;
+	}
+
+	/**
+	 * Writes an int field, in big-endian.
+	 *
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the frame of the first byte to write.
+	 * @param pos The position of the field in the frame.
+	 * @param value The value of the field.
+	 *
+	 * @return The position of the next field in the frame.
+	 */
+	static int putInt(ByteBuffer bb, int offset, int pos, int value) {
+		if ( offset <= pos && bb.remaining() >= Integer.BYTES ) {
+			bb.putInt(value);
+			return pos + Integer.BYTES;
+		}
+
+		return putNumber(bb, offset, pos, value, Integer.BYTES);
+	}
+
+	/**
+	 * Writes a long field, in big-endian.
+	 *
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the frame of the first byte to write.
+	 * @param pos The position of the field in the frame.
+	 * @param value The value of the field.
+	 *
+	 * @return The position of the next field in the frame.
+	 */
+	static int putLong(ByteBuffer bb, int offset, int pos, long value) {
+		if ( offset <= pos && bb.remaining() >= Long.BYTES ) {
+			bb.putLong(value);
+			return pos + Long.BYTES;
+		}
+
+		return putNumber(bb, offset, pos, value, Long.BYTES);
+	}
+
+	/**
+	 * Writes byte by byte the part of a big-endian number located after the offset.
+	 */
+	private static int putNumber(ByteBuffer bb, int offset, int pos, long value, int bytes) {
+		for (var i = Math.max(offset - pos, 0); i < bytes && bb.hasRemaining(); i++) {
+			bb.put((byte) (value >>> (8 * (bytes - 1 - i))));
+		}
+
+		return pos + bytes;
+	}
+
+	/**
+	 * Writes an array of bytes, without length prefix.
+	 *
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the frame of the first byte to write.
+	 * @param pos The position of the field in the frame.
+	 * @param bytes The content of the field.
+	 * @param length The number of bytes of the array to write.
+	 *
+	 * @return The position of the next field in the frame.
+	 */
+	static int putBytes(ByteBuffer bb, int offset, int pos, byte[] bytes, int length) {
+		var from = Math.max(offset - pos, 0);
+
+		if ( from < length ) {
+			bb.put(bytes, from, Math.min(length - from, bb.remaining()));
+		}
+
+		return pos + length;
+	}
+
+	/**
+	 * Writes a string already encoded in UTF-8, prefixed by its length in bytes.
+	 *
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the frame of the first byte to write.
+	 * @param pos The position of the field in the frame.
+	 * @param utf8 The bytes of the string.
+	 *
+	 * @return The position of the next field in the frame.
+	 */
+	static int putString(ByteBuffer bb, int offset, int pos, byte[] utf8) {
+		pos = putInt(bb, offset, pos, utf8.length);
+		return putBytes(bb, offset, pos, utf8, utf8.length);
+	}
+
+	/**
+	 * Computes the size of a string field : its length prefix and its UTF-8 bytes.
+	 *
+	 * @param utf8 The bytes of the string.
+	 *
+	 * @return The size of the field, in bytes.
+	 */
+	static int stringSize(byte[] utf8) {
+		return Integer.BYTES + utf8.length;
+	}
+
+	/**
+	 * Writes a frame with the envelope of the protocol v2 : the length of its payload is written after its opCode.</br>
+	 * The frame is written as by its own writeTo(), 'offset' being the position in the enveloped frame.
+	 *
+	 * @param frame The frame to write.
+	 * @param bb The buffer in which the frame is written, in write-mode.
+	 * @param offset The position in the enveloped frame of the first byte to write.
+	 *
+	 * @return The position in the enveloped frame of the first byte not written yet,
+	 * frame.size() + ENVELOPE_HEADER_SIZE once the frame is entirely written.
+	 */
+	public static int writeEnveloped(Frame frame, ByteBuffer bb, int offset) {
+		var start = bb.position();
+
+		if ( offset == 0 && bb.hasRemaining() ) {
+			// The opCode is the first byte of the frame.
+			var limit = bb.limit();
+			bb.limit(bb.position() + 1);
+			frame.writeTo(bb, 0);
+			bb.limit(limit);
+		}
+		putInt(bb, offset, 1, frame.size() - 1);
+		if ( bb.hasRemaining() ) {
+			frame.writeTo(bb, Math.max(offset - ENVELOPE_HEADER_SIZE, 1));
+		}
+		return offset + bb.position() - start;
+	}
+}
@@ -2,12 +2,14 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.logging.Level;
 
 public class InfoFrame extends AbstractFrame {
 
 	private byte infoCode;
 	private String message;
+	private byte[] encodedMessage; // The message encoded in UTF-8 on first use.
 	
 	
 	
@@ -57,32 +59,26 @@ public class InfoFrame extends AbstractFrame {
 		client.log(level, "Message received : " + message);
 	}
 	
+	/**
+	 * Retrieves the message encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the message.
+	 */
+	private byte[] encodedMessage() {
+		if ( Objects.isNull(encodedMessage) ) {
+			encodedMessage = message.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedMessage;
+	}
+
 	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var messageEncode = cs.encode(message);
-		
-		bb.put((byte) 11 );
-		
-		bb.put(infoCode);
-		
-		bb.putInt(messageEncode.remaining());
-		bb.put(messageEncode);
-		
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeInfo(bb, offset, infoCode, encodedMessage());
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(message).remaining() + 2 + 4;
-		
-
+		return FrameCodecs.sizeInfo(infoCode, encodedMessage());
 	}
 	
 }
@@ -2,53 +2,67 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class InitSendFileFrame extends AbstractFrame {
 	
 	private String fileName;
-	private int fileSize;
+	private byte[] encodedFileName; // The file name encoded in UTF-8 on first use.
+	private long fileSize;
 	private int fileId;
+	private int dataPort; // 0 if the chunks of the file follow on the same connection.
+	private int stripes; // The number of data connections on which the file is downloaded.
 
 	
 
-	public InitSendFileFrame(String fileName, int fileSize, int fileId) {
+	public InitSendFileFrame(String fileName, long fileSize, int fileId) {
+		this(fileName, fileSize, fileId, 0, 1);
+	}
+
+	/**
+	 * Constructor of a frame announcing a file whose content is downloaded on data connections,
+	 * opened by the recipient to the private server of the sender. Each connection carries a range of the file.
+	 * 
+	 * @param fileName The file name.
+	 * @param fileSize The full size of the file.
+	 * @param fileId The file identifier.
+	 * @param dataPort The port of the private server of the sender, 0 if the chunks of the file
+	 * are sent on the connection of this frame.
+	 * @param stripes The number of data connections the recipient is asked to open, 1 unless the file is striped.
+	 */
+	public InitSendFileFrame(String fileName, long fileSize, int fileId, int dataPort, int stripes) {
 		this.fileName = fileName;
 		this.fileSize = fileSize;
 		this.fileId = fileId;
+		this.dataPort = dataPort;
+		this.stripes = stripes;
 	}
 
 	@Override
 	public void accept(ClientVisitor client) {
-		client.initFileDownload(fileName, fileSize, fileId);
+		client.initFileDownload(fileName, fileSize, fileId, dataPort, stripes);
+	}
+
+	/**
+	 * Retrieves the file name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the file name.
+	 */
+	private byte[] encodedFileName() {
+		if ( Objects.isNull(encodedFileName) ) {
+			encodedFileName = fileName.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedFileName;
 	}
 
 	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var fileNameEncode = cs.encode(fileName);
-
-		bb.put((byte) 6);
-
-		bb.putInt(fileNameEncode.remaining());
-		bb.put(fileNameEncode);
-		
-		bb.putInt(fileSize);
-		bb.putInt(fileId);
-
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writeInitSendFile(bb, offset, encodedFileName(), fileSize, fileId, dataPort, stripes);
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(fileName).remaining() + 1 + 4 + 4 + 4;
-		
-
+		return FrameCodecs.sizeInitSendFile(encodedFileName(), fileSize, fileId, dataPort, stripes);
 	}
 
 }
@@ -4,15 +4,19 @@ import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PrivateAnswerFrame extends AbstractFrame {
 	
 	private byte responceCode;
 	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
 	private byte ipType;
 	private InetSocketAddress address;
+	private byte[] ip; // Bytes of the address, kept to be written without allocation.
 	private int id;
 	
 	
@@ -23,6 +27,7 @@ public class PrivateAnswerFrame extends AbstractFrame {
         this.name = name;
         this.ipType = (byte) (ip instanceof Inet4Address ? 0 : 1);
         this.address = new InetSocketAddress(ip, port);
+        this.ip = ip.getAddress();
         this.id = id;
     }
 
@@ -34,6 +39,32 @@ public class PrivateAnswerFrame extends AbstractFrame {
 		this.name = name;
 	}
 
+	/**
+	 * Constructor of a frame read from the network.
+	 *
+	 * @param responceCode The answer, 0 if the communication is accepted.
+	 * @param name The login of the client who answered.
+	 * @param ipType The type of the address, 0 for IPv4 and 1 for IPv6, ignored if the communication is refused.
+	 * @param ip The bytes of the address, null if the communication is refused.
+	 * @param port The port of the private server of the client, ignored if the communication is refused.
+	 * @param id The identifier of the communication, ignored if the communication is refused.
+	 *
+	 * @throws IllegalArgumentException If the bytes of the address are not an IPv4 or IPv6 address.
+	 */
+	public PrivateAnswerFrame(byte responceCode, String name, byte ipType, byte[] ip, int port, int id) {
+		this(responceCode, name);
+		if ( responceCode == 0 ) {
+			try {
+				this.address = new InetSocketAddress(InetAddress.getByAddress(ip), port);
+			} catch (UnknownHostException e) {
+				throw new IllegalArgumentException("Invalid address of " + ip.length + " bytes", e);
+			}
+			this.ipType = ipType;
+			this.ip = ip;
+			this.id = id;
+		}
+	}
+
 
 	@Override
 	public void accept(ClientVisitor client) throws IOException {
@@ -52,41 +83,35 @@ public class PrivateAnswerFrame extends AbstractFrame {
     	}
 	}
 	
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var nameEncode = cs.encode(name);
-		
-		bb.put((byte) 10 );
-		
-		bb.put(responceCode);
-		
-		bb.putInt(nameEncode.remaining());
-		bb.put(nameEncode);
-		
-		if (responceCode == 0) {
-			bb.put(ipType);
-			bb.put(address.getAddress().getAddress());
-			bb.putInt(address.getPort());
-			bb.putInt(id);
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
 		}
-		
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+		return encodedName;
+	}
+
+	/**
+	 * Retrieves the port of the private server of the client.
+	 * 
+	 * @return The port, 0 if the communication is refused.
+	 */
+	private int port() {
+		return Objects.isNull(address) ? 0 : address.getPort();
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateAnswer(bb, offset, responceCode, encodedName(), ipType, ip, port(), id);
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		if (responceCode == 0) {
-			return 1 + 1 + 4 + cs.encode(name).remaining() + 1 + address.getAddress().getAddress().length + 4 + 4;
-		}
-		return cs.encode(name).remaining() + 2 + 4;
-		
-
+		return FrameCodecs.sizePrivateAnswer(responceCode, encodedName(), ipType, ip, port(), id);
 	}
 	
 	
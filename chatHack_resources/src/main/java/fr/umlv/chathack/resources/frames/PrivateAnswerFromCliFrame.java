@@ -3,18 +3,28 @@ package fr.umlv.chathack.resources.frames;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PrivateAnswerFromCliFrame extends AbstractFrame {
 	
 	private byte responceCode;
 	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
 
 	private int port;
 	private int id;
 	
 	
 	
-	private PrivateAnswerFromCliFrame(byte responceCode, String name, int port, int id) {
+	/**
+	 * Constructor of a frame read from the network.
+	 * 
+	 * @param responceCode The answer, 0 if the communication is accepted.
+	 * @param name The login of the client who asked for the communication.
+	 * @param port The port of the private server, ignored if the communication is refused.
+	 * @param id The identifier of the communication, ignored if the communication is refused.
+	 */
+	public PrivateAnswerFromCliFrame(byte responceCode, String name, int port, int id) {
         this.responceCode = responceCode;
         this.name = name;
         this.port = port;
@@ -44,40 +54,26 @@ public class PrivateAnswerFromCliFrame extends AbstractFrame {
     }
 
 	
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var nameEncode = cs.encode(name);
-		
-		bb.put((byte) 3 );
-		
-		bb.put(responceCode);
-		
-		bb.putInt(nameEncode.remaining());
-		bb.put(nameEncode);
-		
-		if (responceCode == 0) {
-			bb.putInt(port);
-			bb.putInt(id);
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
 		}
-		
-		
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+		return encodedName;
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateAnswerFromCli(bb, offset, responceCode, encodedName(), port, id);
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		if (responceCode == 0) {
-			return cs.encode(name).remaining() + 2 + 4 + 4 + 4;
-		}
-		return cs.encode(name).remaining() + 2 + 4;
-		
-
+		return FrameCodecs.sizePrivateAnswerFromCli(responceCode, encodedName(), port, id);
 	}
 	
 	
@@ -0,0 +1,53 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+
+public class PrivateAuthAnswerFrame extends AbstractFrame {
+
+	private byte responceCode;
+	private int chunkSize; // The size of the file chunks agreed on, if the authentication is accepted.
+
+	/**
+	 * Constructor of a frame read from the network.
+	 * 
+	 * @param responceCode The answer, 0 if the authentication is accepted.
+	 * @param chunkSize The size of the file chunks agreed on, ignored if the authentication is refused.
+	 */
+	public PrivateAuthAnswerFrame(byte responceCode, int chunkSize) {
+		this.responceCode = responceCode;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Constructor of the answer accepting the authentication of a client to a private server.</br>
+	 * The chunk size is the smallest of the one asked by the client and of the largest one the server accepts :
+	 * both clients send their file chunks with this size.
+	 * 
+	 * @param chunkSize The size of the file chunks agreed on.
+	 */
+	public PrivateAuthAnswerFrame(int chunkSize) {
+		this((byte) 0, chunkSize);
+	}
+
+	/**
+	 * Constructor of the answer refusing the authentication of a client to a private server.
+	 */
+	public PrivateAuthAnswerFrame() {
+		this((byte) 1, -1);
+	}
+
+	@Override
+	public void accept(ClientVisitor client) {
+		client.privateAuthAnswered(responceCode == 0, chunkSize);
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateAuthAnswer(bb, offset, responceCode, chunkSize);
+	}
+
+	@Override
+	public int size() {
+		return FrameCodecs.sizePrivateAuthAnswer(responceCode, chunkSize);
+	}
+}
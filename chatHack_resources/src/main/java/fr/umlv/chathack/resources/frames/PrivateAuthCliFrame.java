@@ -2,48 +2,54 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PrivateAuthCliFrame extends AbstractFrame {
 	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
 	private int tokenId;
+	private int chunkSize; // The size of the file chunks exchanged on the private connection.
 	
 
-	public PrivateAuthCliFrame(String name, int tokenId) {
+	/**
+	 * Constructor of the frame authenticating a client to a private server.</br>
+	 * The chunk size is the largest size of file chunks the client accepts : the server answers
+	 * with the size both clients use (see PrivateAuthAnswerFrame), at most this one.
+	 * 
+	 * @param name The login of the client.
+	 * @param tokenId The token ID given by the public server.
+	 * @param chunkSize The largest size of the file chunks, positive.
+	 */
+	public PrivateAuthCliFrame(String name, int tokenId, int chunkSize) {
 		this.name = name;
 		this.tokenId = tokenId;
+		this.chunkSize = chunkSize;
 	}
 
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(name).remaining() + 1 + 4 + 4;
+		return FrameCodecs.sizePrivateAuthCli(encodedName(), tokenId, chunkSize);
 	}
 
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var nameEncode = cs.encode(name);
-
-		bb.put((byte) 4);
-
-		
-		
-		bb.putInt(nameEncode.remaining());
-		bb.put(nameEncode);
-		
-		bb.putInt(tokenId);
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
 
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
-	
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateAuthCli(bb, offset, encodedName(), tokenId, chunkSize);
 	}
 
 	@Override
 	public void accept(ClientVisitor client) {
-		client.tryAuthenticate(tokenId, name);
+		client.tryAuthenticate(tokenId, name, chunkSize);
 	}
 }
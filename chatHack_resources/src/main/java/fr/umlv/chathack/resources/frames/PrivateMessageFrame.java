@@ -2,10 +2,12 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PrivateMessageFrame extends AbstractFrame {
 
 	private String message;
+	private byte[] encodedMessage; // The message encoded in UTF-8 on first use.
 
 	public PrivateMessageFrame(String message) {
 		this.message = message;
@@ -16,30 +18,26 @@ public class PrivateMessageFrame extends AbstractFrame {
 		client.printPrivateMessage(message);
 	}
 
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var messageEncode = cs.encode(message);
-
-		bb.put((byte) 5);
-
-		bb.putInt(messageEncode.remaining());
-		bb.put(messageEncode);
+	/**
+	 * Retrieves the message encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the message.
+	 */
+	private byte[] encodedMessage() {
+		if ( Objects.isNull(encodedMessage) ) {
+			encodedMessage = message.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedMessage;
+	}
 
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateMessage(bb, offset, encodedMessage());
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(message).remaining() + 1 + 4;
-		
-
+		return FrameCodecs.sizePrivateMessage(encodedMessage());
 	}
 
 }
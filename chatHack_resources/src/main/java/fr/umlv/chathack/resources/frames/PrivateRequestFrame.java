@@ -2,10 +2,12 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PrivateRequestFrame extends AbstractFrame {
 
 	private String name;
+	private byte[] encodedName; // The name encoded in UTF-8 on first use.
 	
 	
 	public PrivateRequestFrame(String name) {
@@ -28,30 +30,26 @@ public class PrivateRequestFrame extends AbstractFrame {
 		}
 	}
 	
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var nameEncode = cs.encode(name);
-		
-		bb.put((byte) 2);
-
-		bb.putInt(nameEncode.remaining());
-		bb.put(nameEncode);
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
 
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePrivateRequest(bb, offset, encodedName());
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(name).remaining() + 1 + 4;
-		
-
+		return FrameCodecs.sizePrivateRequest(encodedName());
 	}
 
 }
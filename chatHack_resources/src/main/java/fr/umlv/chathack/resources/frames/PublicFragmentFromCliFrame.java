@@ -0,0 +1,108 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Fragment of a public message too long to be sent in a single frame, sent by a client to the server.</br>
+ * A long message is encoded in UTF-8 and split in fragments of at most FRAGMENT_SIZE bytes, numbered
+ * from 0. Every fragment but the last one has its continuation flag set. The server relays each fragment
+ * as soon as it is read, without decoding it nor waiting for the end of the message : only the recipients
+ * reassemble the message.
+ */
+public class PublicFragmentFromCliFrame extends AbstractFrame {
+
+	/**
+	 * The maximum size of the bytes carried by a fragment, which is the maximum size of a string.
+	 */
+	public static final int FRAGMENT_SIZE = 1024;
+
+	/**
+	 * The maximum size of a fragmented message, in bytes.
+	 */
+	public static final int MAX_MESSAGE_SIZE = 64 * 1024;
+
+	private final int sequence;
+	private final boolean continued;
+	private final byte[] chunk; // The bytes of the fragment, never modified.
+
+	/**
+	 * Constructor of a fragment.
+	 *
+	 * @param sequence The number of the fragment in its message, starting from 0.
+	 * @param continued True if other fragments of the message follow this one.
+	 * @param chunk The bytes of the fragment, which must not be modified afterwards.
+	 */
+	public PublicFragmentFromCliFrame(int sequence, boolean continued, byte[] chunk) {
+		if ( sequence < 0 ) {
+			throw new IllegalArgumentException("The sequence of a fragment can not be negative");
+		}
+
+		this.sequence = sequence;
+		this.continued = continued;
+		this.chunk = Objects.requireNonNull(chunk);
+	}
+
+	/**
+	 * Splits a message in the fragments to send to the server.
+	 *
+	 * @param bytes The message encoded in UTF-8, longer than FRAGMENT_SIZE bytes.
+	 *
+	 * @return The fragments, in the order they must be sent.
+	 *
+	 * @throws IllegalArgumentException If the message is longer than MAX_MESSAGE_SIZE bytes.
+	 */
+	public static List<PublicFragmentFromCliFrame> split(byte[] bytes) {
+		if ( bytes.length > MAX_MESSAGE_SIZE ) {
+			throw new IllegalArgumentException("The message can not exceed " + MAX_MESSAGE_SIZE + " bytes");
+		}
+
+		var fragments = new ArrayList<PublicFragmentFromCliFrame>();
+
+		// A character can be split between two fragments, the message is only decoded once reassembled.
+		for (var from = 0; from < bytes.length; from += FRAGMENT_SIZE) {
+			var to = Math.min(from + FRAGMENT_SIZE, bytes.length);
+			fragments.add(new PublicFragmentFromCliFrame(fragments.size(), to < bytes.length, Arrays.copyOfRange(bytes, from, to)));
+		}
+
+		return fragments;
+	}
+
+	@Override
+	public void accept(ServerVisitor server) {
+		server.relayFragment(this);
+	}
+
+	/**
+	 * Creates the frame relaying this fragment to the other clients.</br>
+	 * The bytes of the fragment are shared by both frames.
+	 *
+	 * @param encodedSender The login of the client who sent the fragment, encoded in UTF-8.
+	 *
+	 * @return The frame to send to the other clients.
+	 */
+	public PublicFragmentFromServFrame relayFrom(byte[] encodedSender) {
+		return new PublicFragmentFromServFrame(encodedSender, sequence, continued, chunk);
+	}
+
+	public int getSequence() {
+		return sequence;
+	}
+
+	public boolean isContinued() {
+		return continued;
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePublicFragmentFromCli(bb, offset, sequence, continued, chunk);
+	}
+
+	@Override
+	public int size() {
+		return FrameCodecs.sizePublicFragmentFromCli(sequence, continued, chunk);
+	}
+}
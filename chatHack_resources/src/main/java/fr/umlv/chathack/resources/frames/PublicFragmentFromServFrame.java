@@ -0,0 +1,85 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Fragment of a long public message, relayed by the server to the other clients.</br>
+ * The recipient reassembles the fragments of each sender, see PublicFragmentFromCliFrame.
+ */
+public class PublicFragmentFromServFrame extends AbstractFrame {
+
+	private String name; // Decoded on first use if the frame relays encoded bytes.
+	private byte[] encodedName; // The name encoded in UTF-8 on first use, never modified.
+	private final int sequence;
+	private final boolean continued;
+	private final byte[] chunk; // The bytes of the fragment, never modified.
+
+	public PublicFragmentFromServFrame(String name, int sequence, boolean continued, byte[] chunk) {
+		this.name = Objects.requireNonNull(name);
+		this.sequence = sequence;
+		this.continued = continued;
+		this.chunk = Objects.requireNonNull(chunk);
+	}
+
+	/**
+	 * Constructor of a frame relaying a fragment, whose sender's login is already encoded in UTF-8.
+	 *
+	 * @param encodedName The bytes of the sender's login.
+	 * @param sequence The number of the fragment in its message.
+	 * @param continued True if other fragments of the message follow this one.
+	 * @param chunk The bytes of the fragment.
+	 */
+	PublicFragmentFromServFrame(byte[] encodedName, int sequence, boolean continued, byte[] chunk) {
+		this.encodedName = Objects.requireNonNull(encodedName);
+		this.sequence = sequence;
+		this.continued = continued;
+		this.chunk = Objects.requireNonNull(chunk);
+	}
+
+	@Override
+	public void accept(ClientVisitor client) {
+		client.receivePublicFragment(getName(), sequence, continued, chunk);
+	}
+
+	/**
+	 * Retrieves the sender's login, decoding it on first call only if the frame relays encoded bytes.
+	 *
+	 * @return The login.
+	 */
+	public String getName() {
+		if ( Objects.isNull(name) ) {
+			name = new String(encodedName, StandardCharsets.UTF_8);
+		}
+		return name;
+	}
+
+	@Override
+	public boolean isSheddable() {
+		// The recipient detects the missing fragment and drops the message.
+		return true;
+	}
+
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 *
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePublicFragmentFromServ(bb, offset, encodedName(), sequence, continued, chunk);
+	}
+
+	@Override
+	public int size() {
+		return FrameCodecs.sizePublicFragmentFromServ(encodedName(), sequence, continued, chunk);
+	}
+}
@@ -2,44 +2,81 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
+/**
+ * Public message sent by a client to the server.</br>
+ * A frame read from the network keeps the message encoded in UTF-8 : the server relays
+ * these bytes as they are, and only decodes them if the text itself is asked.
+ */
 public class PublicMessageFromCliFrame extends AbstractFrame {
 
-	private String message;
+	private String message; // Decoded on first use if the frame has been read.
+	private byte[] encodedMessage; // The message encoded in UTF-8 on first use, never modified.
 
 	public PublicMessageFromCliFrame(String message) {
-		this.message = message;
+		this.message = Objects.requireNonNull(message);
+	}
+
+	/**
+	 * Constructor of a frame whose message is already encoded in UTF-8.
+	 *
+	 * @param encodedMessage The bytes of the message, which must not be modified afterwards.
+	 */
+	public PublicMessageFromCliFrame(byte[] encodedMessage) {
+		this.encodedMessage = Objects.requireNonNull(encodedMessage);
 	}
 
 	@Override
 	public void accept(ServerVisitor server) {
-		server.broadcastMessage(message);
+		server.broadcastMessage(this);
 	}
 
-	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var messageEncode = cs.encode(message);
-		bb.put((byte) 1);
+	/**
+	 * Retrieves the message, decoding it on first call only if the frame has been read.
+	 *
+	 * @return The message.
+	 */
+	public String getMessage() {
+		if ( Objects.isNull(message) ) {
+			message = new String(encodedMessage, StandardCharsets.UTF_8);
+		}
+		return message;
+	}
 
-		bb.putInt(messageEncode.remaining());
-		bb.put(messageEncode);
+	/**
+	 * Creates the frame relaying this message to the other clients.</br>
+	 * The message is not decoded : its bytes are shared by both frames.
+	 *
+	 * @param encodedSender The login of the client who sent the message, encoded in UTF-8.
+	 *
+	 * @return The frame to send to the other clients.
+	 */
+	public PublicMessageFromServFrame relayFrom(byte[] encodedSender) {
+		return new PublicMessageFromServFrame(encodedSender, encodedMessage());
+	}
 
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	/**
+	 * Retrieves the message encoded in UTF-8, encoding it on first call only.
+	 *
+	 * @return The bytes of the message.
+	 */
+	private byte[] encodedMessage() {
+		if ( Objects.isNull(encodedMessage) ) {
+			encodedMessage = message.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedMessage;
 	}
-	
+
 	@Override
-	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(message).remaining() + 1 + 4;
-		
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePublicMessageFromCli(bb, offset, encodedMessage());
+	}
 
+	@Override
+	public int size() {
+		return FrameCodecs.sizePublicMessageFromCli(encodedMessage());
 	}
-	
+
 
 }
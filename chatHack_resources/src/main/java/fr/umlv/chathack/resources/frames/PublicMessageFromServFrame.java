@@ -2,50 +2,98 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class PublicMessageFromServFrame extends AbstractFrame {
 
-	private String message;
-	private String name;
+	private String message; // Decoded on first use if the frame relays encoded bytes.
+	private byte[] encodedMessage; // The message encoded in UTF-8 on first use, never modified.
+	private String name; // Decoded on first use if the frame relays encoded bytes.
+	private byte[] encodedName; // The name encoded in UTF-8 on first use, never modified.
 
 	public PublicMessageFromServFrame(String name, String message) {
-		this.name = name;
-		this.message = message;
+		this.name = Objects.requireNonNull(name);
+		this.message = Objects.requireNonNull(message);
+	}
+
+	/**
+	 * Constructor of a frame relaying a message already encoded in UTF-8, without decoding it.
+	 *
+	 * @param encodedName The bytes of the sender's login.
+	 * @param encodedMessage The bytes of the message.
+	 */
+	PublicMessageFromServFrame(byte[] encodedName, byte[] encodedMessage) {
+		this.encodedName = Objects.requireNonNull(encodedName);
+		this.encodedMessage = Objects.requireNonNull(encodedMessage);
 	}
 
 	@Override
 	public void accept(ClientVisitor client) {
-		System.out.println("From " + name + " to everyone :");
-		System.out.println(message);
+		System.out.println("From " + getName() + " to everyone :");
+		System.out.println(getMessage());
+	}
+
+	/**
+	 * Retrieves the sender's login, decoding it on first call only if the frame relays encoded bytes.
+	 *
+	 * @return The login.
+	 */
+	public String getName() {
+		if ( Objects.isNull(name) ) {
+			name = new String(encodedName, StandardCharsets.UTF_8);
+		}
+		return name;
+	}
+
+	/**
+	 * Retrieves the message, decoding it on first call only if the frame relays encoded bytes.
+	 *
+	 * @return The message.
+	 */
+	public String getMessage() {
+		if ( Objects.isNull(message) ) {
+			message = new String(encodedMessage, StandardCharsets.UTF_8);
+		}
+		return message;
+	}
+
+	@Override
+	public boolean isSheddable() {
+		return true;
+	}
+
+	/**
+	 * Retrieves the name encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the name.
+	 */
+	private byte[] encodedName() {
+		if ( Objects.isNull(encodedName) ) {
+			encodedName = name.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedName;
+	}
+
+	/**
+	 * Retrieves the message encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the message.
+	 */
+	private byte[] encodedMessage() {
+		if ( Objects.isNull(encodedMessage) ) {
+			encodedMessage = message.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedMessage;
 	}
 
 	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var messageEncode = cs.encode(message);
-		var nameEncode = cs.encode(name);
-		bb.put((byte) 9);
-
-		bb.putInt(nameEncode.remaining());
-		bb.put(nameEncode);
-		
-		bb.putInt(messageEncode.remaining());
-		bb.put(messageEncode);
-
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	public int writeTo(ByteBuffer bb, int offset) {
+		return FrameCodecs.writePublicMessageFromServ(bb, offset, encodedName(), encodedMessage());
 	}
 	
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		
-		return cs.encode(message).remaining() + 1 + 4;
-		
-
+		return FrameCodecs.sizePublicMessageFromServ(encodedName(), encodedMessage());
 	}
 	
 
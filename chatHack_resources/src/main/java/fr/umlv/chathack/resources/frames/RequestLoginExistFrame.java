@@ -2,10 +2,12 @@ package fr.umlv.chathack.resources.frames;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class RequestLoginExistFrame extends AbstractFrame {
 	private long id;
 	private String login;
+	private byte[] encodedLogin; // The login encoded in UTF-8 on first use.
 
 	public RequestLoginExistFrame(long id, String login) {
 		this.id = id;
@@ -17,30 +19,30 @@ public class RequestLoginExistFrame extends AbstractFrame {
 		// TODO
 	}
 
+	/**
+	 * Retrieves the login encoded in UTF-8, encoding it on first call only.
+	 * 
+	 * @return The bytes of the login.
+	 */
+	private byte[] encodedLogin() {
+		if ( Objects.isNull(encodedLogin) ) {
+			encodedLogin = login.getBytes(StandardCharsets.UTF_8);
+		}
+		return encodedLogin;
+	}
+
 	@Override
-	public byte[] getBytes() {
-		var cs = StandardCharsets.UTF_8;
-		var bb = ByteBuffer.allocate(1024);
-		var loginEncode = cs.encode(login);
-		
-		bb.put((byte) 2);
-		bb.putLong(id);
-
-		bb.putInt(loginEncode.remaining());
-		bb.put(loginEncode);
-		
-		bb.flip();
-		byte[] arr = new byte[bb.remaining()];
-		bb.get(arr);
-		return arr;
+	public int writeTo(ByteBuffer bb, int offset) {
+		var start = bb.position();
+		var pos = FrameEncoder.putByte(bb, offset, 0, (byte) 2);
+		pos = FrameEncoder.putLong(bb, offset, pos, id);
+		FrameEncoder.putString(bb, offset, pos, encodedLogin());
+		return offset + bb.position() - start;
 	}
 
 	@Override
 	public int size() {
-		var cs = StandardCharsets.UTF_8;
-		return cs.encode(login).remaining() + 1 + Long.BYTES + 4;
-		
-
+		return 1 + Long.BYTES + FrameEncoder.stringSize(encodedLogin());
 	}
 
 }
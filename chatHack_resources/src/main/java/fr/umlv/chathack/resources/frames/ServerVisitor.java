@@ -32,6 +32,12 @@ public interface ServerVisitor {
      */
     void tryLogin(String login);
     
+    /**
+     * Records that the client asks for the envelope of the protocol v2 : if its connection is accepted,
+     * the frames following the answer are enveloped in both directions.
+     */
+    void useEnvelope();
+    
     /**
      * Authenticates or deny the authentication of a client
      * according to the database answer.
@@ -45,11 +51,19 @@ public interface ServerVisitor {
      * Broadcast a public message to the server, so every connected client
      * can receive it.
      * 
-     * @param message The message to broadcast.
+     * @param message The frame of the message to broadcast, whose text is decoded only if asked.
      * 
      * @throws IllegalStateException If the client is not able to send a broadcast a frame.
      */
-    void broadcastMessage(String message) throws IllegalStateException;
+    void broadcastMessage(PublicMessageFromCliFrame message) throws IllegalStateException;
+    
+    /**
+     * Relay a fragment of a long public message to every other connected client,
+     * as soon as it is received.
+     * 
+     * @param fragment The fragment to relay, whose bytes are never decoded.
+     */
+    void relayFragment(PublicFragmentFromCliFrame fragment);
     
     /**
      * Send a frame to a specific client connected to the server.
@@ -0,0 +1,63 @@
+package fr.umlv.chathack.resources.frames;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Frame encoded only once, whose bytes are shared by all of its recipients.</br>
+ * The wrapped frame is serialized a single time in an array,
+ * then writing it only copies this array. It is used to broadcast
+ * a frame without encoding it again for every recipient.
+ */
+public class SharedFrame extends AbstractFrame {
+	private final Frame frame;
+	private final byte[] bytes; // Never modified nor exposed.
+
+	public SharedFrame(Frame frame) {
+		this.frame = Objects.requireNonNull(frame);
+		this.bytes = frame.getBytes();
+	}
+
+	@Override
+	public void accept(ClientVisitor client) throws IOException {
+		frame.accept(client);
+	}
+
+	@Override
+	public void accept(ServerVisitor server) throws IOException {
+		frame.accept(server);
+	}
+
+	@Override
+	public boolean isSheddable() {
+		return frame.isSheddable();
+	}
+
+	@Override
+	public boolean isBulk() {
+		return frame.isBulk();
+	}
+
+	@Override
+	public byte[] getBytes() {
+		return bytes.clone();
+	}
+
+	@Override
+	public int writeTo(ByteBuffer bb, int offset) {
+		var length = Math.min(bytes.length - offset, bb.remaining());
+		bb.put(bytes, offset, length);
+		return offset + length;
+	}
+
+	@Override
+	public int size() {
+		return bytes.length;
+	}
+
+	@Override
+	public String toString() {
+		return "Shared " + frame;
+	}
+}
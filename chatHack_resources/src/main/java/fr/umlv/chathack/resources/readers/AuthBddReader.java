@@ -10,7 +10,6 @@ public class AuthBddReader implements Reader{
 		DONE, WAITING_ID, WAITING_LOGIN, WAITING_PASS, ERROR
 	}
 
-	private final ByteBuffer bb;
 	private State state = State.WAITING_ID;
 
 	private long id;
@@ -19,50 +18,41 @@ public class AuthBddReader implements Reader{
 
 	private StringReader strReader;
 
-	public AuthBddReader(ByteBuffer bb) {
-		this.bb = bb;
-		strReader = new StringReader(bb);
+	public AuthBddReader() {
+		strReader = new StringReader();
 	}
 
 	@Override
-	public ProcessStatus process() {
+	public ProcessStatus process(ByteBuffer bb) {
 		if (state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
 		ProcessStatus status;
-		switch (state) {
-		case WAITING_ID:
-			if (bb.remaining() >= Long.BYTES) {
-				id = bb.getLong();
-				state = State.WAITING_LOGIN;
+		if (state == State.WAITING_ID) {
+			if (bb.remaining() < Long.BYTES) {
+				return ProcessStatus.REFILL;
 			}
+			id = bb.getLong();
+			state = State.WAITING_LOGIN;
+		}
 
-		case WAITING_LOGIN:
-			status = strReader.process();
-			if (status == ProcessStatus.DONE) {
-				login = (String) strReader.get();
-				state = State.WAITING_PASS;
-			} else {
-				return status;
-			}
-
-		case WAITING_PASS:
-			status = strReader.process();
-			if (status == ProcessStatus.DONE) {
-				pass = (String) strReader.get();
-
-				state = State.DONE;
-				return ProcessStatus.DONE;
-
-			} else {
+		if (state == State.WAITING_LOGIN) {
+			status = strReader.process(bb);
+			if (status != ProcessStatus.DONE) {
 				return status;
 			}
-		default:
-			throw new IllegalStateException();
-
+			login = (String) strReader.get();
+			strReader.reset();
+			state = State.WAITING_PASS;
 		}
 
-
+		status = strReader.process(bb);
+		if (status != ProcessStatus.DONE) {
+			return status;
+		}
+		pass = (String) strReader.get();
+		state = State.DONE;
+		return ProcessStatus.DONE;
 	}
 
 	@Override
@@ -11,7 +11,6 @@ public class BddReader implements Reader {
 		DONE, WAITING_OPCODE, WAITING_ID, ERROR
 	}
 
-	private final ByteBuffer bb;
 	private State state = State.WAITING_OPCODE;
 
 	private byte opCode;
@@ -20,24 +19,20 @@ public class BddReader implements Reader {
 
 
 
-	public BddReader(ByteBuffer bb) {
-		this.bb = bb;
-	}
-
 
 
 	@Override
-	public ProcessStatus process() {
+	public ProcessStatus process(ByteBuffer bb) {
 		if (state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
-		bb.flip();
-
-		if (state == State.WAITING_OPCODE && bb.remaining() >= Byte.BYTES) {
-			opCode = bb.get();
-			state = State.WAITING_ID;
-		}else {
-			return ProcessStatus.REFILL;
+		if (state == State.WAITING_OPCODE) {
+			if (bb.remaining() >= Byte.BYTES) {
+				opCode = bb.get();
+				state = State.WAITING_ID;
+			}else {
+				return ProcessStatus.REFILL;
+			}
 		}
 
 		if (state == State.WAITING_ID && bb.remaining() >= Long.BYTES) {
@@ -63,10 +58,6 @@ public class BddReader implements Reader {
 
 	@Override
 	public void reset() {
-		if (bb.position() != 0) {
-			bb.compact();
-		}
-
 		state = State.WAITING_OPCODE;
 		
 	}
@@ -0,0 +1,107 @@
+package fr.umlv.chathack.resources.readers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a string encoded in UTF-8 and prefixed by its size in bytes, on an int,
+ * without decoding it : get() returns the bytes of the string.
+ * It is used for the texts the server only relays, and for the data of a file.
+ * The bytes are copied as they arrive, so the string can be split across several reads.
+ */
+public class EncodedStringReader implements Reader {
+
+	private enum State {
+		DONE, WAITING_SIZE, WAITING_TEXT, ERROR
+	};
+
+	private final int minSize;
+	private final int maxSize;
+
+	private State state = State.WAITING_SIZE;
+	private byte[] bytes;
+	private int received; // Number of bytes of the string already received.
+
+	/**
+	 * Constructor of a reader of strings of 1 to StringReader.MAX_SIZE bytes.
+	 */
+	public EncodedStringReader() {
+		this(1, StringReader.MAX_SIZE);
+	}
+
+	/**
+	 * Constructor of a reader of strings whose size is bounded.
+	 *
+	 * @param minSize The minimum size of a string, in bytes.
+	 * @param maxSize The maximum size of a string, in bytes.
+	 */
+	public EncodedStringReader(int minSize, int maxSize) {
+		if ( minSize < 0 || maxSize < minSize ) {
+			throw new IllegalArgumentException("Invalid bounds of the size of a string");
+		}
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Process the bb to get the first int then get the encoded string of
+	 * of size found in the first int bb need to be in read mode
+	 * 
+	 * @return the ProcessStatus
+	 * @throws IllegalStateException if the state isn't good when the function is
+	 *                               run
+	 */
+	@Override
+	public ProcessStatus process(ByteBuffer bb) {
+		if (state == State.DONE || state == State.ERROR) {
+			throw new IllegalStateException();
+		}
+
+		if (state == State.WAITING_SIZE) {
+			if (bb.remaining() < Integer.BYTES) {
+				return ProcessStatus.REFILL;
+			}
+			var size = bb.getInt();
+
+			if (size < minSize || size > maxSize) {
+				return ProcessStatus.ERROR;
+			}
+			bytes = new byte[size];
+			received = 0;
+			state = State.WAITING_TEXT;
+		}
+
+		var length = Math.min(bb.remaining(), bytes.length - received);
+		bb.get(bytes, received, length);
+		received += length;
+
+		if (received < bytes.length) {
+			return ProcessStatus.REFILL;
+		}
+		state = State.DONE;
+		return ProcessStatus.DONE;
+	}
+
+	/**
+	 * Need to be call after the function process returned DONE
+	 * 
+	 * @return the bytes of the string, as an Object need to cast the result
+	 * @throws IllegalStateException if the state isn't DONE
+	 *
+	 */
+	@Override
+	public Object get() {
+		if (state != State.DONE) {
+			throw new IllegalStateException();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reset the state meaning we need new data to process in bb
+	 */
+	@Override
+	public void reset() {
+		state = State.WAITING_SIZE;
+		bytes = null;
+	}
+}
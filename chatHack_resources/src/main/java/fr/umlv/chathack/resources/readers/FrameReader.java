@@ -1,115 +1,108 @@
 package fr.umlv.chathack.resources.readers;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Supplier;
+import java.util.Objects;
 
 import fr.umlv.chathack.resources.frames.Frame;
 
 /**
  * 
- * This class is used to process the data in the ByteBuffer bb.
+ * This class is used to process the data in the ByteBuffer given to process.
  * The state is used to know what to do when the method process is called.
  * The state WAITING_OPCODE mean that we are still waiting for the first byte of the frame. 
  * As soon as you got it, the method will process the data of the corresponding reader. 
- * the map is only use to associate an opCode to a reader. 
+ * The readers are stored in an array indexed by the opCode, so finding the reader of a frame
+ * and resetting it are a single array access. 
+ * The readers are only instantiated when their opCode is received for the first time :
+ * a connection only ever receives a few kinds of frames. 
  * 
  * When the frame is totally receive the Frame will be created. 
  * And the method return the Frame corresponding to the data processed. 
+ * 
+ * The buffer is in read mode when process is called : the frame is read behind its position,
+ * and the bytes of an incomplete frame which could not be consumed yet are left in it.
+ * 
+ * Once the envelope of the protocol v2 is used, the opCode is followed by the length of the payload
+ * (see FrameEncoder.writeEnveloped). The reader of the opCode is still given the payload as its bytes arrive,
+ * possibly over several calls, and can return REFILL until the payload is complete, but the limit of the buffer
+ * is set to the end of the payload : a reader never consumes the bytes of the next frame. A reader asking for more
+ * bytes than the payload holds makes the frame invalid. An unknown opCode, an invalid payload or the bytes a reader
+ * leaves at the end of the payload are skipped without losing the following frames.
  *
  */
 public class FrameReader implements Reader {
 
 	private enum State {
-		DONE, WAITING_OPCODE, WAITING_TRAME, ERROR
+		DONE, WAITING_OPCODE, WAITING_LENGTH, WAITING_TRAME, ERROR
 	}
 
-	private final ByteBuffer bb;
 	private State state = State.WAITING_OPCODE;
 
 	private byte opCode;
 
 	private Frame frame;
 
-	private ConnectionReader connectionReader;
-	private PublicMessageFromCliReader publicMessageFromCliReader;
-	private PrivateRequestReader privateRequestReader;
-	private PrivateAnswerFromCliReader privateAnswerFromCliReader;
-	private PrivateAuthCliReader privateAuthCliReader;
-	private PrivateMessageReader privateMessageReader;
-	private InitSendFileReader initSendFileReader;
-	private DlFileReader dlFileReader;
-	private ConnectionAnswerReader connectionAnswerReader;
-	private PublicMessageFromServReader publicMessageFromServReader;
-	private PrivateAnswerReader privateAnswerReader;
-	private InfoReader infoReader;
-
-	private final Map<Byte, Supplier<ProcessStatus>> map = new HashMap<Byte, Supplier<ProcessStatus>>();
-
-	private FrameReader(ByteBuffer bb, ConnectionReader connectionReader,
-			PublicMessageFromCliReader publicMessageFromCliReader, PrivateRequestReader privateRequestReader,
-			PrivateAnswerFromCliReader privateAnswerFromCliReader, PrivateAuthCliReader privateAuthCliReader,
-			PrivateMessageReader privateMessageReader, InitSendFileReader initSendFileReader, DlFileReader dlFileReader,
-			ConnectionAnswerReader connectionAnswerReader, PublicMessageFromServReader publicMessageFromServReader,
-			PrivateAnswerReader privateAnswerReader, InfoReader infoReader) {
-
-		this.bb = bb;
-		this.connectionReader = connectionReader;
-		this.publicMessageFromCliReader = publicMessageFromCliReader;
-		this.privateRequestReader = privateRequestReader;
-		this.privateAnswerFromCliReader = privateAnswerFromCliReader;
-		this.privateAuthCliReader = privateAuthCliReader;
-		this.privateMessageReader = privateMessageReader;
-		this.initSendFileReader = initSendFileReader;
-		this.dlFileReader = dlFileReader;
-		this.connectionAnswerReader = connectionAnswerReader;
-		this.publicMessageFromServReader = publicMessageFromServReader;
-		this.privateAnswerReader = privateAnswerReader;
-		this.infoReader = infoReader;
-
-		map.put((byte) 0, () -> processReader(connectionReader));
-		map.put((byte) 1, () -> processReader(publicMessageFromCliReader));
-		map.put((byte) 2, () -> processReader(privateRequestReader));
-		map.put((byte) 3, () -> processReader(privateAnswerFromCliReader));
-		map.put((byte) 4, () -> processReader(privateAuthCliReader));
-		map.put((byte) 5, () -> processReader(privateMessageReader));
-		map.put((byte) 6, () -> processReader(initSendFileReader));
-		map.put((byte) 7, () -> processReader(dlFileReader));
-		map.put((byte) 8, () -> processReader(connectionAnswerReader));
-		map.put((byte) 9, () -> processReader(publicMessageFromServReader));
-		map.put((byte) 10, () -> processReader(privateAnswerReader));
-		map.put((byte) 11, () -> processReader(infoReader));
-	}
+	private boolean enveloped; // True once the frames are prefixed by the length of their payload.
+	private long payloadLeft; // Bytes of the payload of the current frame not consumed yet, if enveloped.
+	private long skipped; // Bytes of an invalid frame still to skip, kept by reset().
+
+
 
-	public FrameReader(ByteBuffer bb) {
-		this(bb, new ConnectionReader(bb), new PublicMessageFromCliReader(bb), new PrivateRequestReader(bb),
-				new PrivateAnswerFromCliReader(bb), new PrivateAuthCliReader(bb), new PrivateMessageReader(bb),
-				new InitSendFileReader(bb), new DlFileReader(bb), new ConnectionAnswerReader(bb),
-				new PublicMessageFromServReader(bb), new PrivateAnswerReader(bb), new InfoReader(bb));
+	private final Reader[] readers; // Indexed by opCode, null until the first frame of this opCode.
+
+	public FrameReader() {
+		this.readers = new Reader[ReaderFactories.FACTORIES.size()];
 	}
 	
 	/**
-	 * This method will try to get the opCode then it will call the associated function in the map.
+	 * Reads the following frames with the envelope of the protocol v2.
+	 * Must be called between two frames.
+	 */
+	public void useEnvelope() {
+		if (state != State.WAITING_OPCODE) {
+			throw new IllegalStateException();
+		}
+		enveloped = true;
+	}
+
+	/**
+	 * This method will try to get the opCode then it will call the process method of the associated reader.
 	 */
 	@Override
-	public ProcessStatus process() {
+	public ProcessStatus process(ByteBuffer bb) {
 		if (state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
-		bb.flip();
-
+		if (skipped > 0) {
+			var length = (int) Math.min(skipped, bb.remaining());
+			bb.position(bb.position() + length);
+			skipped -= length;
+			if (skipped > 0) {
+				return ProcessStatus.REFILL;
+			}
+		}
 		if (state == State.WAITING_OPCODE && bb.remaining() >= Byte.BYTES) {
 			opCode = bb.get();
+			state = enveloped ? State.WAITING_LENGTH : State.WAITING_TRAME;
+		}
+
+		if (state == State.WAITING_LENGTH) {
+			if (bb.remaining() < Integer.BYTES) {
+				return ProcessStatus.REFILL;
+			}
+			payloadLeft = Integer.toUnsignedLong(bb.getInt());
 			state = State.WAITING_TRAME;
 		}
 
 		if (state == State.WAITING_TRAME) {
-			var fun =  map.get(opCode);
-			if (fun == null) {
-				return ProcessStatus.ERROR;
+			var index = Byte.toUnsignedInt(opCode);
+			if (index >= readers.length) {
+				return skipPayload();
+			}
+			if (Objects.isNull(readers[index])) {
+				readers[index] = ReaderFactories.FACTORIES.get(index).get();
 			}
-			return fun.get();
+			return enveloped ? processPayload(readers[index], bb) : processReader(readers[index], bb);
 		}
 
 		return ProcessStatus.REFILL;
@@ -134,59 +127,23 @@ public class FrameReader implements Reader {
 	 */
 	@Override
 	public void reset() {
-		if (bb.position() != 0) {
-			bb.compact();
-		}
-
 		state = State.WAITING_OPCODE;
-		switch (opCode) {
-		case 0:
-			connectionReader.reset();
-			break;
-		case 1:
-			publicMessageFromCliReader.reset();
-			break;
-		case 2:
-			privateRequestReader.reset();
-			break;
-		case 3:
-			privateAnswerFromCliReader.reset();
-			break;
-		case 4:
-			privateAuthCliReader.reset();
-			break;
-		case 5:
-			privateMessageReader.reset();
-			break;
-		case 6:
-			initSendFileReader.reset();
-			break;
-		case 7:
-			dlFileReader.reset();
-			break;
-		case 8:
-			connectionAnswerReader.reset();
-			break;
-		case 9:
-			publicMessageFromServReader.reset();
-			break;
-		case 10:
-			privateAnswerReader.reset();
-			break;
-		case 11:
-			infoReader.reset();
-			break;
+		payloadLeft = 0;
+		var index = Byte.toUnsignedInt(opCode);
+		if (index < readers.length && !Objects.isNull(readers[index])) {
+			readers[index].reset();
 		}
 	}
+
 	/**
 	 * function to execute the reader's process method
 	 * @param reader
+	 * @param bb
 	 * @return ProcessStatus DONE if finish or REFILL if needed or ERROR if one occur 
 	 */
-	private ProcessStatus processReader(Reader reader) {
-		var status = reader.process();
+	private ProcessStatus processReader(Reader reader, ByteBuffer bb) {
+		var status = reader.process(bb);
 		if (status != ProcessStatus.DONE) {
-			bb.compact();
 			return status;
 		} else {
 			state = State.DONE;
@@ -195,4 +152,54 @@ public class FrameReader implements Reader {
 		}
 	}
 
+	/**
+	 * function to execute the reader's process method on the bytes of the payload only.
+	 * The bytes of the payload the reader did not consume once its frame is read are skipped :
+	 * they are fields added to the frame by a later version of the protocol.
+	 * @param reader
+	 * @param bb
+	 * @return ProcessStatus DONE if finish or REFILL if needed or ERROR if the payload is invalid
+	 */
+	private ProcessStatus processPayload(Reader reader, ByteBuffer bb) {
+		var limit = bb.limit();
+		var start = bb.position();
+		var complete = payloadLeft <= bb.remaining(); // The whole payload has been received.
+
+		bb.limit(start + (int) Math.min(payloadLeft, bb.remaining()));
+		ProcessStatus status;
+		try {
+			status = reader.process(bb);
+		} finally {
+			bb.limit(limit);
+		}
+		payloadLeft -= bb.position() - start;
+
+		switch (status) {
+		case DONE:
+			skipped = payloadLeft;
+			payloadLeft = 0;
+			state = State.DONE;
+			frame = (Frame) reader.get();
+			return ProcessStatus.DONE;
+		case REFILL:
+			if (!complete) {
+				return ProcessStatus.REFILL;
+			}
+			return skipPayload(); // The reader expects more bytes than the payload holds.
+		default:
+			return skipPayload();
+		}
+	}
+
+	/**
+	 * Skips the rest of the payload of the current frame, which can not be read.
+	 * Without envelope, the end of the frame is unknown and nothing is skipped.
+	 * @return ProcessStatus ERROR
+	 */
+	private ProcessStatus skipPayload() {
+		skipped = payloadLeft;
+		payloadLeft = 0;
+		return ProcessStatus.ERROR;
+	}
+
 }
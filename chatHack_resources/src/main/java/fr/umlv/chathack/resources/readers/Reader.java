@@ -1,5 +1,7 @@
 package fr.umlv.chathack.resources.readers;
 
+import java.nio.ByteBuffer;
+
 public interface Reader {
 	
 	/**
@@ -11,11 +13,17 @@ public interface Reader {
 	};
 	
 	/**
-	 * This method is used to process a part of the ByteBuffer and extract the necessary data 
+	 * This method is used to process a part of the ByteBuffer and extract the necessary data.
+	 * The ByteBuffer is in read mode : the bytes are consumed from its position, and the bytes
+	 * which could not be consumed yet are left in it for the next call.
+	 * A reader is not bound to a buffer : the next call can be made with another buffer,
+	 * holding the bytes following the ones consumed.
+	 * 
+	 * @param bb The buffer to process, in read mode.
 	 * 
 	 * @return DONE if finish, REFILL if needed or ERROR if one occur 
 	 */
-	public ProcessStatus process();
+	public ProcessStatus process(ByteBuffer bb);
 	
 	/**
 	 * Get the data extract from the ByteBuffer.
@@ -11,7 +11,6 @@ public class RequestLoginExistReader implements Reader{
 		DONE, WAITING_ID, WAITING_LOGIN, ERROR
 	}
 
-	private final ByteBuffer bb;
 	private State state = State.WAITING_ID;
 
 	private long id;
@@ -19,40 +18,30 @@ public class RequestLoginExistReader implements Reader{
 
 	private StringReader strReader;
 
-	public RequestLoginExistReader(ByteBuffer bb) {
-		this.bb = bb;
-		strReader = new StringReader(bb);
+	public RequestLoginExistReader() {
+		strReader = new StringReader();
 	}
 
 	@Override
-	public ProcessStatus process() {
+	public ProcessStatus process(ByteBuffer bb) {
 		if (state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
-		ProcessStatus status;
-		switch (state) {
-		case WAITING_ID:
-			if (bb.remaining() >= Long.BYTES) {
-				id = bb.getLong();
-				state = State.WAITING_LOGIN;
+		if (state == State.WAITING_ID) {
+			if (bb.remaining() < Long.BYTES) {
+				return ProcessStatus.REFILL;
 			}
-
-		case WAITING_LOGIN:
-			status = strReader.process();
-			if (status == ProcessStatus.DONE) {
-				login = (String) strReader.get();
-				state = State.DONE;
-				return ProcessStatus.DONE;
-			} else {
-				return status;
-			}
-
-		default:
-			throw new IllegalStateException();
-
+			id = bb.getLong();
+			state = State.WAITING_LOGIN;
 		}
 
-
+		var status = strReader.process(bb);
+		if (status != ProcessStatus.DONE) {
+			return status;
+		}
+		login = (String) strReader.get();
+		state = State.DONE;
+		return ProcessStatus.DONE;
 	}
 
 	@Override
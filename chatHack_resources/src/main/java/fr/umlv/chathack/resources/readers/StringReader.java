@@ -1,68 +1,83 @@
 package fr.umlv.chathack.resources.readers;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
+/**
+ * Reads a string encoded in UTF-8 and prefixed by its size in bytes, on an int.
+ * 
+ * When the whole string is in the buffer, its bytes are copied in a scratch array owned by
+ * the current thread, and decoded by the String constructor : it only copies the bytes
+ * of an ASCII string, and decodes the others without CharsetDecoder nor CharBuffer.
+ * The only allocation is then the String itself.
+ * When the string is split across several reads, the bytes received are kept in an
+ * array of the size of the string, until the last ones arrive.
+ */
 public class StringReader implements Reader {
 
 	private enum State {
 		DONE, WAITING_SIZE, WAITING_TEXT, ERROR
 	};
 
-	private final ByteBuffer bb;
+	static final int MAX_SIZE = 1024; // Size max of any string, in bytes.
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[MAX_SIZE]);
+
 	private State state = State.WAITING_SIZE;
 	private int size;
+	private byte[] partial; // Bytes of a string split across several reads, null otherwise.
+	private int received; // Number of bytes of partial already received.
 	private String str;
-	private final static Charset UTF_8_CHARSET = StandardCharsets.UTF_8;
-
-	/**
-	 * We need in the buffer at least one int for the size of the string encode in
-	 * UTF_8 and the following size bytes
-	 * 
-	 * @param bb the buffer to process and use later.
-	 */
-	public StringReader(ByteBuffer bb) {
-		this.bb = bb;
-	}
 
 	/**
 	 * Process the bb to get the first int then get and decode the encoded string of
-	 * of size found in the first int bb need to be in write mode
+	 * of size found in the first int bb need to be in read mode
 	 * 
 	 * @return the ProcessStatus
 	 * @throws IllegalStateException if the state isn't good when the function is
 	 *                               run
 	 */
 	@Override
-	public ProcessStatus process() {
+	public ProcessStatus process(ByteBuffer bb) {
 		if (state == State.DONE || state == State.ERROR) {
 			throw new IllegalStateException();
 		}
 
-		if (state == State.WAITING_SIZE && bb.remaining() >= Integer.BYTES) {
+		if (state == State.WAITING_SIZE) {
+			if (bb.remaining() < Integer.BYTES) {
+				return ProcessStatus.REFILL;
+			}
 			size = bb.getInt();
 
-			// size max of any string fixed at 1024
-			if (size <= 0 || size > 1024) {
-				System.out.println("String Error");
-				System.out.println(size);
+			if (size <= 0 || size > MAX_SIZE) {
 				return ProcessStatus.ERROR;
 			}
 			state = State.WAITING_TEXT;
 		}
 
-		if (state == State.WAITING_TEXT && bb.remaining() >= size) {
-			var oldLim = bb.limit();
-			bb.limit(bb.position() + size);
-			str = UTF_8_CHARSET.decode(bb).toString();
-			bb.limit(oldLim);
+		if (Objects.isNull(partial) && bb.remaining() >= size) {
+			var bytes = SCRATCH.get();
+			bb.get(bytes, 0, size);
+			str = new String(bytes, 0, size, StandardCharsets.UTF_8);
 			state = State.DONE;
 			return ProcessStatus.DONE;
-		} else {
-			return ProcessStatus.REFILL;
 		}
 
+		if (Objects.isNull(partial)) {
+			partial = new byte[size];
+			received = 0;
+		}
+		var length = Math.min(bb.remaining(), size - received);
+		bb.get(partial, received, length);
+		received += length;
+
+		if (received < size) {
+			return ProcessStatus.REFILL;
+		}
+		str = new String(partial, StandardCharsets.UTF_8);
+		partial = null;
+		state = State.DONE;
+		return ProcessStatus.DONE;
 	}
 
 	/**
@@ -86,5 +101,6 @@ public class StringReader implements Reader {
 	@Override
 	public void reset() {
 		state = State.WAITING_SIZE;
+		partial = null;
 	}
 }
\ No newline at end of file
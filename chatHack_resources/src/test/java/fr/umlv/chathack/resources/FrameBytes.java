@@ -0,0 +1,110 @@
+package fr.umlv.chathack.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.umlv.chathack.resources.frames.Frame;
+import fr.umlv.chathack.resources.frames.FrameEncoder;
+import fr.umlv.chathack.resources.readers.FrameReader;
+import fr.umlv.chathack.resources.readers.Reader;
+import fr.umlv.chathack.resources.readers.Reader.ProcessStatus;
+
+/**
+ * Encodes frames and reads them back as a connection would, the bytes arriving in pieces of a given size.
+ */
+public final class FrameBytes {
+
+	private FrameBytes() {
+		// Only static methods.
+	}
+
+	/**
+	 * Writes a frame, in a buffer of the given capacity, resuming the frame each time the buffer is full.
+	 *
+	 * @param frame The frame.
+	 * @param enveloped True to write the frame with the envelope of the protocol v2.
+	 * @param capacity The capacity of the buffer.
+	 *
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] encode(Frame frame, boolean enveloped, int capacity) {
+		var bytes = new ByteArrayOutputStream();
+		var bb = ByteBuffer.allocate(capacity);
+		var size = enveloped ? frame.size() + FrameEncoder.ENVELOPE_HEADER_SIZE : frame.size();
+
+		for (var offset = 0; offset < size; ) {
+			offset = enveloped ? FrameEncoder.writeEnveloped(frame, bb, offset) : frame.writeTo(bb, offset);
+			bytes.write(bb.array(), 0, bb.position());
+			bb.clear();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes a frame in a single buffer.
+	 *
+	 * @param frame The frame.
+	 *
+	 * @return The bytes of the frame.
+	 */
+	public static byte[] encode(Frame frame) {
+		return encode(frame, false, frame.size() + FrameEncoder.ENVELOPE_HEADER_SIZE);
+	}
+
+	/**
+	 * Reads the results of a reader from bytes received in pieces, in a buffer compacted after each piece
+	 * like the input buffer of a context. The reader is reset after each result.
+	 *
+	 * @param reader The reader.
+	 * @param bytes The bytes received.
+	 * @param piece The number of bytes received at once.
+	 *
+	 * @return The statuses DONE and ERROR returned by the reader and the objects read, in order : the object read for DONE,
+	 * the status ERROR itself otherwise.
+	 */
+	public static List<Object> read(Reader reader, byte[] bytes, int piece) {
+		var results = new ArrayList<Object>();
+		var bb = ByteBuffer.allocate(bytes.length + piece);
+
+		for (var from = 0; from < bytes.length; from += piece) {
+			bb.put(bytes, from, Math.min(piece, bytes.length - from));
+			bb.flip();
+			read: while ( bb.hasRemaining() ) {
+				switch ( reader.process(bb) ) {
+					case DONE -> {
+						results.add(reader.get());
+						reader.reset();
+					}
+					case ERROR -> {
+						results.add(ProcessStatus.ERROR);
+						reader.reset();
+					}
+					case REFILL -> {
+						break read;
+					}
+				}
+			}
+			bb.compact();
+		}
+		return results;
+	}
+
+	/**
+	 * Reads frames from bytes received in pieces.
+	 *
+	 * @param bytes The bytes of the frames.
+	 * @param enveloped True if the frames are enveloped.
+	 * @param piece The number of bytes received at once.
+	 *
+	 * @return The frames read, and ProcessStatus.ERROR for each frame which could not be read.
+	 */
+	public static List<Object> readFrames(byte[] bytes, boolean enveloped, int piece) {
+		var reader = new FrameReader();
+		if ( enveloped ) {
+			reader.useEnvelope();
+		}
+		return read(reader, bytes, piece);
+	}
+}
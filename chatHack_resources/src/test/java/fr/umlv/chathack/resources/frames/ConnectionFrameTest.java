@@ -0,0 +1,84 @@
+package fr.umlv.chathack.resources.frames;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+
+class ConnectionFrameTest {
+
+	/**
+	 * Connection request as decoded by the servers predating the envelope.
+	 */
+	private record BaselineConnection(String name, String pass) {}
+
+	/**
+	 * Decodes a connection request like the servers predating the envelope : a password follows the login
+	 * if and only if the password code is 0.
+	 */
+	private static BaselineConnection decodeBaseline(ByteBuffer bb) {
+		assertEquals(0, bb.get());
+		var passNeed = bb.get() == 0;
+		var name = decodeString(bb);
+		return new BaselineConnection(name, passNeed ? decodeString(bb) : null);
+	}
+
+	private static String decodeString(ByteBuffer bb) {
+		var bytes = new byte[bb.getInt()];
+		bb.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the request of a client asking for the envelope of the protocol v2.
+	 */
+	private static byte[] enveloped(ConnectionFrame connection) {
+		var bytes = new ByteArrayOutputStream();
+		bytes.writeBytes(FrameBytes.encode(connection));
+		bytes.writeBytes(FrameBytes.encode(new EnvelopeRequestFrame()));
+		return bytes.toByteArray();
+	}
+
+	@Test
+	void envelopeRequestIsDecodedByAServerPredatingIt() {
+		var cases = List.of(
+				new ConnectionFrame("alice", "secret", true),
+				new ConnectionFrame("guest"));
+		var expected = List.of(
+				new BaselineConnection("alice", "secret"),
+				new BaselineConnection("guest", null));
+
+		for (var i = 0; i < cases.size(); i++) {
+			var bb = ByteBuffer.wrap(enveloped(cases.get(i)));
+
+			assertEquals(expected.get(i), decodeBaseline(bb));
+			// Only the opCode of the request follows, which such a server skips alone.
+			assertEquals(1, bb.remaining());
+			assertTrue(bb.get() > 11, "The request must have an opCode unknown to such a server, which reads 0 to 11");
+		}
+	}
+
+	@Test
+	void passwordCodeIsTheOneOfTheBaseline() {
+		assertEquals(0, FrameBytes.encode(new ConnectionFrame("alice", "secret", true))[1]);
+		assertEquals(1, FrameBytes.encode(new ConnectionFrame("guest"))[1]);
+	}
+
+	@Test
+	void envelopeRequestIsReadBackOneByteAtATime() {
+		var connection = new ConnectionFrame("alice", "secret", true);
+		var read = FrameBytes.readFrames(enveloped(connection), false, 1);
+
+		assertEquals(2, read.size());
+		assertArrayEquals(FrameBytes.encode(connection), FrameBytes.encode((Frame) read.get(0)));
+		assertEquals(EnvelopeRequestFrame.class, read.get(1).getClass());
+	}
+}
@@ -0,0 +1,126 @@
+package fr.umlv.chathack.resources.frames;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+import fr.umlv.chathack.resources.readers.Reader.ProcessStatus;
+
+class EnvelopeTest {
+	private static final Frame NEXT = new PublicMessageFromCliFrame("next");
+
+	/**
+	 * Writes an enveloped frame by hand.
+	 */
+	private static byte[] envelope(int opCode, int length, byte[] payload) {
+		return ByteBuffer.allocate(1 + Integer.BYTES + payload.length).put((byte) opCode).putInt(length).put(payload).array();
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		var bytes = new ByteArrayOutputStream();
+		for (var part : parts) {
+			bytes.writeBytes(part);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Checks that an invalid frame followed by NEXT is skipped, whatever the pieces the bytes are received in.
+	 */
+	private static void assertSkipped(byte[] invalid) {
+		var bytes = concat(invalid, FrameBytes.encode(NEXT, true, 64));
+
+		for (var piece : new int[] { 1, 2, 3, 7, bytes.length }) {
+			var read = FrameBytes.readFrames(bytes, true, piece);
+
+			assertEquals(2, read.size(), "pieces of " + piece);
+			assertEquals(ProcessStatus.ERROR, read.get(0));
+			assertArrayEquals(FrameBytes.encode(NEXT), FrameBytes.encode((Frame) read.get(1)));
+		}
+	}
+
+	@Test
+	void headerHoldsTheLengthOfThePayload() {
+		for (var frame : FrameCodecsTest.FRAMES) {
+			var bytes = FrameBytes.encode(frame);
+			var enveloped = FrameBytes.encode(frame, true, 64 * 1024);
+			var header = ByteBuffer.wrap(enveloped);
+
+			assertEquals(bytes[0], header.get(), frame.getClass().getSimpleName());
+			assertEquals(frame.size() - 1, header.getInt(), frame.getClass().getSimpleName());
+			assertArrayEquals(Arrays.copyOfRange(bytes, 1, bytes.length), Arrays.copyOfRange(enveloped, 1 + Integer.BYTES, enveloped.length));
+		}
+	}
+
+	@Test
+	void writingInPiecesGivesTheSameBytes() {
+		for (var frame : FrameCodecsTest.FRAMES) {
+			var whole = FrameBytes.encode(frame, true, 64 * 1024);
+			for (var capacity = 1; capacity < 10; capacity++) {
+				assertArrayEquals(whole, FrameBytes.encode(frame, true, capacity), frame.getClass().getSimpleName() + " in pieces of " + capacity);
+			}
+		}
+	}
+
+	@Test
+	void framesDeliveredOneByteAtATimeAreReadBack() {
+		var bytes = new ByteArrayOutputStream();
+		for (var frame : FrameCodecsTest.FRAMES) {
+			bytes.writeBytes(FrameBytes.encode(frame, true, 3));
+		}
+
+		var read = FrameBytes.readFrames(bytes.toByteArray(), true, 1);
+
+		assertEquals(FrameCodecsTest.FRAMES.size(), read.size());
+		for (var i = 0; i < FrameCodecsTest.FRAMES.size(); i++) {
+			assertInstanceOf(FrameCodecsTest.FRAMES.get(i).getClass(), read.get(i));
+			assertArrayEquals(FrameBytes.encode(FrameCodecsTest.FRAMES.get(i)), FrameBytes.encode((Frame) read.get(i)));
+		}
+	}
+
+	@Test
+	void unknownOpCodeIsSkipped() {
+		assertSkipped(envelope(200, 5, new byte[] { 1, 2, 3, 4, 5 }));
+		assertSkipped(envelope(200, 0, new byte[0]));
+	}
+
+	@Test
+	void trailingBytesOfThePayloadAreSkipped() {
+		var bytes = FrameBytes.encode(new PublicMessageFromCliFrame("hello"));
+		var payload = concat(Arrays.copyOfRange(bytes, 1, bytes.length), new byte[] { 9, 9, 9 });
+		var extended = concat(envelope(bytes[0], payload.length, payload), FrameBytes.encode(NEXT, true, 64));
+
+		for (var piece : new int[] { 1, 2, 5, extended.length }) {
+			var read = FrameBytes.readFrames(extended, true, piece);
+
+			assertEquals(2, read.size(), "pieces of " + piece);
+			assertArrayEquals(bytes, FrameBytes.encode((Frame) read.get(0)));
+			assertArrayEquals(FrameBytes.encode(NEXT), FrameBytes.encode((Frame) read.get(1)));
+		}
+	}
+
+	@Test
+	void payloadShorterThanItsFieldsIsSkipped() {
+		var bytes = FrameBytes.encode(new PublicMessageFromCliFrame("hello"));
+		var payload = Arrays.copyOfRange(bytes, 1, bytes.length - 2);
+
+		assertSkipped(envelope(bytes[0], payload.length, payload));
+	}
+
+	@Test
+	void oversizedStringLengthInThePayloadIsSkipped() {
+		for (var size : List.of(-1, 1025, Integer.MAX_VALUE)) {
+			var payload = ByteBuffer.allocate(Integer.BYTES + 8).putInt(size).array();
+
+			assertSkipped(envelope(1, payload.length, payload));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package fr.umlv.chathack.resources.frames;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+
+/**
+ * Round trips of the frames through the codecs generated from the schema and the generated readers.
+ */
+class FrameCodecsTest {
+
+	/**
+	 * Frames of every opCode, in order, then the variants whose conditional fields are not sent.
+	 */
+	static final List<Frame> FRAMES = List.of(
+			new ConnectionFrame("login", "password", true),
+			new PublicMessageFromCliFrame("héllo"),
+			new PrivateRequestFrame("bob"),
+			new PrivateAnswerFromCliFrame("bob", 7777, 42),
+			new PrivateAuthCliFrame("alice", 42, DlFileFrame.MAX_CHUNK_SIZE),
+			new PrivateMessageFrame("private"),
+			new InitSendFileFrame("file.bin", 1L << 40, 3, 8888, 4),
+			new DlFileFrame(3, new byte[] { 1, 2, 3, 4, 5 }),
+			new ConnectionAnswerFrame((byte) 0, true),
+			new PublicMessageFromServFrame("alice", "wörld"),
+			new PrivateAnswerFrame((byte) 0, "alice", InetAddress.getLoopbackAddress(), 7777, 42),
+			new InfoFrame((byte) 1, "info"),
+			new PublicFragmentFromCliFrame(2, true, "fragment".getBytes(StandardCharsets.UTF_8)),
+			new PublicFragmentFromServFrame("alice", 2, false, "fragment".getBytes(StandardCharsets.UTF_8)),
+			new FileRequestFrame("alice", 42, 3, 1024, 1L << 32, 2),
+			new PrivateAuthAnswerFrame(4096),
+			new EnvelopeRequestFrame(),
+			new ConnectionFrame("guest"),
+			new PrivateAnswerFromCliFrame("bob"),
+			new PrivateAnswerFrame((byte) 1, "alice"),
+			new PrivateAuthAnswerFrame());
+
+	@Test
+	void sizeIsTheNumberOfBytesWritten() {
+		for (var frame : FRAMES) {
+			assertEquals(frame.size(), FrameBytes.encode(frame).length, frame.getClass().getSimpleName());
+		}
+	}
+
+	@Test
+	void opCodeIsTheIndexInTheSchema() {
+		for (var i = 0; i <= 16; i++) {
+			assertEquals(i, FrameBytes.encode(FRAMES.get(i))[0]);
+		}
+	}
+
+	@Test
+	void frameWrittenInPiecesIsWrittenWhole() {
+		for (var frame : FRAMES) {
+			var whole = FrameBytes.encode(frame);
+			for (var capacity = 1; capacity <= 9; capacity++) {
+				assertArrayEquals(whole, FrameBytes.encode(frame, false, capacity), frame.getClass().getSimpleName() + " in pieces of " + capacity);
+			}
+		}
+	}
+
+	@Test
+	void everyFrameIsReadBack() {
+		for (var frame : FRAMES) {
+			var bytes = FrameBytes.encode(frame);
+			var read = FrameBytes.readFrames(bytes, false, bytes.length);
+
+			assertEquals(1, read.size(), frame.getClass().getSimpleName());
+			assertInstanceOf(frame.getClass(), read.get(0));
+			assertArrayEquals(bytes, FrameBytes.encode((Frame) read.get(0)), frame.getClass().getSimpleName());
+		}
+	}
+
+	@Test
+	void framesDeliveredOneByteAtATimeAreReadBack() {
+		var bytes = new ByteArrayOutputStream();
+		for (var frame : FRAMES) {
+			bytes.writeBytes(FrameBytes.encode(frame));
+		}
+
+		var read = FrameBytes.readFrames(bytes.toByteArray(), false, 1);
+
+		assertEquals(FRAMES.size(), read.size());
+		for (var i = 0; i < FRAMES.size(); i++) {
+			assertArrayEquals(FrameBytes.encode(FRAMES.get(i)), FrameBytes.encode((Frame) read.get(i)));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package fr.umlv.chathack.resources.frames;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+
+class PublicFragmentFromCliFrameTest {
+
+	@Test
+	void messageIsSplitInFragmentsInSequence() {
+		var message = new byte[3 * PublicFragmentFromCliFrame.FRAGMENT_SIZE + 1];
+		var fragments = PublicFragmentFromCliFrame.split(message);
+
+		assertEquals(4, fragments.size());
+		for (var i = 0; i < fragments.size(); i++) {
+			assertEquals(i, fragments.get(i).getSequence());
+			assertEquals(i < fragments.size() - 1, fragments.get(i).isContinued());
+		}
+	}
+
+	@Test
+	void messageOfMaximumSizeIsSplit() {
+		var fragments = PublicFragmentFromCliFrame.split(new byte[PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE]);
+
+		assertEquals(PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE / PublicFragmentFromCliFrame.FRAGMENT_SIZE, fragments.size());
+	}
+
+	@Test
+	void oversizedMessageIsRefused() {
+		assertThrows(IllegalArgumentException.class, () -> PublicFragmentFromCliFrame.split(new byte[PublicFragmentFromCliFrame.MAX_MESSAGE_SIZE + 1]));
+	}
+
+	@Test
+	void fragmentsAreReadBackOneByteAtATime() {
+		var message = new byte[2 * PublicFragmentFromCliFrame.FRAGMENT_SIZE + 7];
+		for (var i = 0; i < message.length; i++) {
+			message[i] = (byte) i;
+		}
+		var fragments = PublicFragmentFromCliFrame.split(message);
+		var bytes = new ByteArrayOutputStream();
+		fragments.forEach(fragment -> bytes.writeBytes(FrameBytes.encode(fragment)));
+
+		var read = FrameBytes.readFrames(bytes.toByteArray(), false, 1);
+
+		assertEquals(fragments.size(), read.size());
+		for (var i = 0; i < fragments.size(); i++) {
+			var fragment = (PublicFragmentFromCliFrame) read.get(i);
+			assertEquals(i, fragment.getSequence());
+			assertEquals(i < fragments.size() - 1, fragment.isContinued());
+			assertArrayEquals(FrameBytes.encode(fragments.get(i)), FrameBytes.encode(fragment));
+		}
+	}
+}
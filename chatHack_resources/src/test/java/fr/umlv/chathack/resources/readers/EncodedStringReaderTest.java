@@ -0,0 +1,72 @@
+package fr.umlv.chathack.resources.readers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+import fr.umlv.chathack.resources.readers.Reader.ProcessStatus;
+
+class EncodedStringReaderTest {
+
+	private static ByteBuffer encode(int size) {
+		var bb = ByteBuffer.allocate(Integer.BYTES + Math.max(size, 0)).putInt(size);
+		for (var i = 0; i < size; i++) {
+			bb.put((byte) i);
+		}
+		return bb.flip();
+	}
+
+	@Test
+	void sizesAtTheBoundsAreRead() {
+		for (var size : new int[] { 2, 5 }) {
+			var reader = new EncodedStringReader(2, 5);
+			assertEquals(ProcessStatus.DONE, reader.process(encode(size)), "size " + size);
+			assertEquals(size, ((byte[]) reader.get()).length);
+		}
+	}
+
+	@Test
+	void sizesOutOfTheBoundsAreErrors() {
+		for (var size : new int[] { 1, 6, -1, Integer.MAX_VALUE }) {
+			var reader = new EncodedStringReader(2, 5);
+			assertEquals(ProcessStatus.ERROR, reader.process(ByteBuffer.allocate(Integer.BYTES).putInt(size).flip()), "size " + size);
+		}
+	}
+
+	@Test
+	void emptyStringIsReadIfAllowed() {
+		var reader = new EncodedStringReader(0, 4);
+
+		assertEquals(ProcessStatus.DONE, reader.process(encode(0)));
+		assertArrayEquals(new byte[0], (byte[]) reader.get());
+	}
+
+	@Test
+	void defaultBoundsRefuseEmptyString() {
+		assertEquals(ProcessStatus.ERROR, new EncodedStringReader().process(encode(0)));
+	}
+
+	@Test
+	void stringDeliveredOneByteAtATimeIsRead() {
+		var bb = encode(300);
+		var bytes = new byte[bb.remaining()];
+		bb.get(bytes);
+
+		var read = FrameBytes.read(new EncodedStringReader(), bytes, 1);
+
+		assertEquals(1, read.size());
+		assertArrayEquals(Arrays.copyOfRange(bytes, Integer.BYTES, bytes.length), (byte[]) read.get(0));
+	}
+
+	@Test
+	void invalidBoundsAreRefused() {
+		assertThrows(IllegalArgumentException.class, () -> new EncodedStringReader(-1, 4));
+		assertThrows(IllegalArgumentException.class, () -> new EncodedStringReader(5, 4));
+	}
+}
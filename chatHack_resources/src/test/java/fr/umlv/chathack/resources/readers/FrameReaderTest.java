@@ -0,0 +1,91 @@
+package fr.umlv.chathack.resources.readers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+import fr.umlv.chathack.resources.frames.DlFileFrame;
+import fr.umlv.chathack.resources.frames.Frame;
+import fr.umlv.chathack.resources.frames.InfoFrame;
+import fr.umlv.chathack.resources.frames.PrivateMessageFrame;
+import fr.umlv.chathack.resources.frames.PublicMessageFromServFrame;
+import fr.umlv.chathack.resources.readers.Reader.ProcessStatus;
+
+class FrameReaderTest {
+
+	@Test
+	void framesAreReadBehindTheCursor() {
+		var frames = List.<Frame>of(new PrivateMessageFrame("first"), new InfoFrame((byte) 0, "second"), new PublicMessageFromServFrame("alice", "third"));
+		var bb = ByteBuffer.allocate(1024);
+		for (var frame : frames) {
+			bb.put(FrameBytes.encode(frame));
+		}
+		bb.flip();
+
+		var reader = new FrameReader();
+		var position = 0;
+		for (var frame : frames) {
+			assertEquals(ProcessStatus.DONE, reader.process(bb));
+			position += frame.size();
+			assertEquals(position, bb.position(), "The cursor stops right after the frame");
+			assertArrayEquals(FrameBytes.encode(frame), FrameBytes.encode((Frame) reader.get()));
+			reader.reset();
+		}
+		assertEquals(bb.limit(), bb.position());
+	}
+
+	@Test
+	void frameDeliveredOneByteAtATimeIsRead() {
+		var frame = new PublicMessageFromServFrame("alice", "a message of more than a few bytes, é");
+		var bytes = FrameBytes.encode(frame);
+
+		var read = FrameBytes.readFrames(bytes, false, 1);
+
+		assertEquals(1, read.size());
+		assertArrayEquals(bytes, FrameBytes.encode((Frame) read.get(0)));
+	}
+
+	@Test
+	void incompleteFrameAsksForRefill() {
+		var bytes = FrameBytes.encode(new PrivateMessageFrame("incomplete"));
+		var reader = new FrameReader();
+
+		var bb = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+		assertEquals(ProcessStatus.REFILL, reader.process(bb));
+
+		assertEquals(ProcessStatus.DONE, reader.process(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+		assertInstanceOf(PrivateMessageFrame.class, reader.get());
+	}
+
+	@Test
+	void oversizedStringLengthIsAnError() {
+		var bytes = ByteBuffer.allocate(5).put((byte) 5).putInt(StringReader.MAX_SIZE + 1).array();
+
+		assertEquals(List.of(ProcessStatus.ERROR), FrameBytes.readFrames(bytes, false, bytes.length));
+	}
+
+	@Test
+	void negativeStringLengthIsAnError() {
+		var bytes = ByteBuffer.allocate(5).put((byte) 5).putInt(-1).array();
+
+		assertEquals(List.of(ProcessStatus.ERROR), FrameBytes.readFrames(bytes, false, bytes.length));
+	}
+
+	@Test
+	void oversizedChunkIsAnError() {
+		var bytes = ByteBuffer.allocate(9).put((byte) 7).putInt(1).putInt(DlFileFrame.MAX_CHUNK_SIZE + 1).array();
+
+		assertEquals(List.of(ProcessStatus.ERROR), FrameBytes.readFrames(bytes, false, bytes.length));
+	}
+
+	@Test
+	void unknownOpCodeIsAnError() {
+		assertEquals(List.of(ProcessStatus.ERROR), FrameBytes.readFrames(new byte[] { (byte) 200 }, false, 1));
+	}
+}
@@ -0,0 +1,81 @@
+package fr.umlv.chathack.resources.readers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import fr.umlv.chathack.resources.FrameBytes;
+import fr.umlv.chathack.resources.readers.Reader.ProcessStatus;
+
+class StringReaderTest {
+
+	private static byte[] encode(String string) {
+		var utf8 = string.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(Integer.BYTES + utf8.length).putInt(utf8.length).put(utf8).array();
+	}
+
+	@Test
+	void stringSplitAtEveryPositionIsRead() {
+		var bytes = encode("héllo wörld");
+
+		for (var split = 1; split < bytes.length; split++) {
+			// The bytes not consumed are left in the buffer, which then receives the following ones.
+			var bb = ByteBuffer.wrap(bytes).limit(split);
+			var reader = new StringReader();
+			assertEquals(ProcessStatus.REFILL, reader.process(bb));
+			assertEquals(ProcessStatus.DONE, reader.process(bb.limit(bytes.length)));
+			assertEquals("héllo wörld", reader.get());
+		}
+	}
+
+	@Test
+	void stringSplitAtTheScratchBoundaryIsRead() {
+		// The last character, on two bytes, is split between the last byte of the scratch array and the next read.
+		var string = "a".repeat(StringReader.MAX_SIZE - 2) + "é";
+		var bytes = encode(string);
+		var split = bytes.length - 1;
+
+		var bb = ByteBuffer.wrap(bytes).limit(split);
+		var reader = new StringReader();
+		assertEquals(ProcessStatus.REFILL, reader.process(bb));
+		assertEquals(ProcessStatus.DONE, reader.process(bb.limit(bytes.length)));
+		assertEquals(string, reader.get());
+	}
+
+	@Test
+	void stringOfMaximumSizeDoesNotLeakInTheNextOne() {
+		var longest = "é".repeat(StringReader.MAX_SIZE / 2);
+		var bytes = ByteBuffer.allocate(2 * Integer.BYTES + StringReader.MAX_SIZE + 2).put(encode(longest)).put(encode("ab")).array();
+
+		assertEquals(List.of(longest, "ab"), FrameBytes.read(new StringReader(), bytes, bytes.length));
+	}
+
+	@Test
+	void stringDeliveredOneByteAtATimeIsRead() {
+		var bytes = encode("one byte at a time");
+
+		assertEquals(List.of("one byte at a time"), FrameBytes.read(new StringReader(), bytes, 1));
+	}
+
+	@Test
+	void bytesFollowingTheStringAreLeft() {
+		var bb = ByteBuffer.allocate(32).put(encode("abc")).put((byte) 42).flip();
+
+		var reader = new StringReader();
+		assertEquals(ProcessStatus.DONE, reader.process(bb));
+		assertEquals(1, bb.remaining());
+		assertEquals(42, bb.get());
+	}
+
+	@Test
+	void sizeOutOfBoundsIsAnError() {
+		for (var size : new int[] { 0, -1, StringReader.MAX_SIZE + 1, Integer.MIN_VALUE }) {
+			var reader = new StringReader();
+			assertEquals(ProcessStatus.ERROR, reader.process(ByteBuffer.allocate(Integer.BYTES).putInt(size).flip()), "size " + size);
+		}
+	}
+}
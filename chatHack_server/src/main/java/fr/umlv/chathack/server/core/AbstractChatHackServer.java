@@ -0,0 +1,268 @@
+package fr.umlv.chathack.server.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.umlv.chathack.contexts.BufferPool;
+import fr.umlv.chathack.contexts.OutboundBudget;
+import fr.umlv.chathack.contexts.Server;
+import fr.umlv.chathack.contexts.ServerContext;
+import fr.umlv.chathack.resources.frames.AuthBddFrame;
+import fr.umlv.chathack.resources.frames.Frame;
+import fr.umlv.chathack.resources.frames.RequestLoginExistFrame;
+import fr.umlv.chathack.resources.frames.SharedFrame;
+
+/**
+ * Base of the ChatHack servers, independent of the way the connections are served.</br>
+ * It holds the clients authenticated to the server and the requests sent to the database server,
+ * and it routes the frames between the clients.
+ */
+public abstract class AbstractChatHackServer implements Server {
+	static protected final Logger logger = Logger.getLogger(AbstractChatHackServer.class.getName());
+	static protected final int DB_PORT = 7777;
+	static protected final long BUDGET_CHECK_PERIOD = 1000; // Milliseconds between two checks of the grace period of the clients over budget.
+	
+    private final Map<Long, ServerContext> pendingClients; // Clients asking for authentication but not yet authenticated. Key:requestID ; Value:ClientContext
+    private final Map<String, ServerContext> authenticatedClients;
+    private final AtomicLong requestId; // Identifier of the last request sent to the database server.
+    private final OutboundBudget outboundBudget; // Null if the frames queued for a client are not bounded.
+    
+    private volatile boolean acceptingNewClients;
+    
+    /**
+     * Constructor of a server.
+     * 
+     * @param outboundBudget The budget of bytes queued for each client, or null if it is not bounded.
+     * 
+     * @throws IOException If the log file could not be opened.
+     */
+    public AbstractChatHackServer(OutboundBudget outboundBudget) throws IOException {
+		logger.addHandler(new FileHandler("server_log.log"));
+		logger.setUseParentHandlers(false);
+		
+        this.pendingClients = new ConcurrentHashMap<>();
+        this.authenticatedClients = new ConcurrentHashMap<>();
+        this.requestId = new AtomicLong(System.currentTimeMillis());
+        this.outboundBudget = outboundBudget;
+        
+        this.acceptingNewClients = true;
+    }
+    
+	/**
+	 * Starts the server, with reset parameters.</br>
+	 * Starts by trying to connect to the database server to which the server will verify the authenticity of the clients.</br>
+	 * <br>
+	 * The server does not stop accepting new clients until server.shutdown() or server.stop() is called.</br>
+	 * </br>
+	 * Informations about the server state can be given with server.showInfos().
+	 * 
+	 * @throws IOException if the server could not be started.
+	 */
+    public abstract void launch() throws IOException;
+    
+	/**
+	 * Stop the server and interrupts the connection with all connected clients.
+	 */
+    public abstract void stop();
+    
+    /**
+     * Retrieves the context of the connection with the database server.
+     * 
+     * @return The database server context.
+     */
+    protected abstract ServerContext databaseContext();
+    
+    /**
+     * Applies the outbound budget of the server to the context of a new client.
+     * 
+     * @param ctx The new client's context.
+     * 
+     * @return The given context.
+     */
+    protected ServerContext withOutboundBudget(ServerContext ctx) {
+    	ctx.setOutboundBudget(outboundBudget);
+    	return ctx;
+    }
+    
+    /**
+     * Add the client to the authenticated list.
+     * 
+     * @param login The login's client.
+     * @param ctx The client's context.
+     */
+    private void authenticateClient(String login, ServerContext ctx) {
+    	logger.log(Level.INFO, "Authenticating " + login + " to the server.");
+    	
+    	authenticatedClients.put(login, ctx);
+    }
+    
+    /**
+     * Prints informations about the current state of the server.
+     */
+    public void showInfos() {
+    	System.out.println("There are " + authenticatedClients.size() + " client(s) authenticated to the server :");
+    	authenticatedClients.forEach((login, ctx) -> {
+    		var infos = new StringBuilder("- ").append(login)
+    				.append(String.format(" (messages queued %.3f ms on average, %.3f ms at most",
+    						ctx.getAverageQueueDelay(false) / 1e6, ctx.getMaxQueueDelay(false) / 1e6));
+    		if ( ctx.getDroppedFrames() > 0 ) {
+    			infos.append(", ").append(ctx.getDroppedFrames()).append(" frame(s) dropped, ").append(ctx.getDroppedBytes()).append(" bytes");
+    		}
+    		System.out.println(infos.append(")"));
+    	});
+    	
+    	if ( !Objects.isNull(outboundBudget) ) {
+    		System.out.println("Outbound budget : " + outboundBudget + ", " + outboundBudget.getDroppedFrames() + " frame(s) dropped ("
+    				+ outboundBudget.getDroppedBytes() + " bytes), " + outboundBudget.getDisconnections() + " client(s) disconnected");
+    	}
+    	
+    	var pool = BufferPool.SHARED;
+    	System.out.println("Buffer pool : " + pool.getBorrowedBuffers() + " buffer(s) borrowed out of " + pool.getAllocatedBuffers()
+    			+ " (" + pool.getAllocatedBuffers() * pool.getBufferSize() / 1024 + " KiB of direct memory)");
+    }
+    
+    /**
+     * Prevents the server to allow new clients.
+     */
+    public void shutdown() {
+    	System.out.println("The server does not allow new clients anymore.");
+    	log(Level.INFO, "The server does not allow new clients anymore.");
+    	
+    	acceptingNewClients = false;
+    }
+    
+    /**
+     * Removes the client from the authenticated list, if he was authenticated.
+     * 
+     * @param ctx The client's context.
+     */
+    @Override
+    public void removeClient(ServerContext ctx) {
+        if ( !Objects.isNull(ctx) && !Objects.isNull(ctx.getLogin()) ) {
+        	authenticatedClients.remove(ctx.getLogin(), ctx);
+        }
+    }
+    
+    /**
+     * Stops the server, which will disconnect all clients.
+     */
+    public void shutdownnow() {
+    	System.out.println("The server is going to close now.");
+    	
+    	stop();
+    }
+    
+	@Override
+	public void broadcast(Frame frame) {
+		logger.log(Level.INFO, "Broadcasting a frame : " + frame);
+		
+		var sharedFrame = new SharedFrame(frame); // The frame is encoded once for every recipient.
+		
+		for (var ctx : authenticatedClients.values()) {
+			ctx.queueMessage(sharedFrame);
+		}
+	}
+	
+	@Override
+	public void broadcast(Frame frame, String... logins) {
+		logger.log(Level.INFO, "Broadcasting a frame : " + frame);
+		
+		var sharedFrame = new SharedFrame(frame); // The frame is encoded once for every recipient.
+		var excludedLogins = Arrays.asList(logins);
+		
+		for (var ctx : authenticatedClients.values()) {
+			if ( excludedLogins.contains(ctx.getLogin()) ) {
+				continue;
+			}
+			
+			ctx.queueMessage(sharedFrame);
+		}
+	}
+
+	@Override
+	public void sendFrame(Frame frame, String dest) throws IllegalArgumentException {
+		var ctx = authenticatedClients.get(dest);
+		
+		if ( Objects.isNull(ctx) ) {
+			throw new IllegalArgumentException(dest + " is not authenticated to the server");
+		}
+		
+		ctx.queueMessage(frame);
+	}
+	
+	@Override
+	public void sendAuthRequest(String login, String password, ServerContext ctx) {
+		if ( !acceptingNewClients ) {
+			ctx.answerConnection((byte) 3);
+			return;
+		}
+		
+		ServerContext dbCtx = databaseContext();
+		
+		long id = requestId.incrementAndGet(); // Generating a unique identifier, even if several reactors send requests at the same time.
+		
+		pendingClients.put(id, ctx);
+		dbCtx.queueMessage(new AuthBddFrame(id, login, password));
+	}
+
+	@Override
+	public void sendAuthRequest(String login, ServerContext ctx) {
+		if ( !acceptingNewClients ) {
+			ctx.answerConnection((byte) 3);
+			return;
+		}
+		
+		ServerContext dbCtx = databaseContext();
+		
+		long id = requestId.incrementAndGet(); // Generating a unique identifier, even if several reactors send requests at the same time.
+		
+		pendingClients.put(id, ctx);
+		dbCtx.queueMessage(new RequestLoginExistFrame(id, login));
+	}
+	
+	@Override
+	public void tryAuthenticate(long id, boolean positiveAnswer) {
+		if ( !pendingClients.containsKey(id) ) {
+			return;
+		}
+		
+		ServerContext ctx = pendingClients.get(id);
+		pendingClients.remove(id);
+		
+		if ( positiveAnswer ) {
+			if ( ctx.isGuest() ) {
+				// It means that the login with which the client wanted to identify already exists in the database, so we refuse the authentication.
+				ctx.answerConnection((byte) 2);
+				return;
+			}
+		} else {
+			if ( !ctx.isGuest() ) {
+				// It means that the pair login/password was invalid.
+				ctx.answerConnection((byte) 1);
+				return;
+			}
+		}
+		
+		ctx.confirmAuthentication();
+		authenticateClient(ctx.getLogin(), ctx);
+		ctx.answerConnection((byte) 0);
+	}
+
+	@Override
+	public void log(Level level, String msg) {
+		logger.log(level, msg);
+	}
+
+	@Override
+	public void log(Level level, String msg, Throwable thrw) {
+		logger.log(level, msg, thrw);
+	}
+
+}
@@ -8,39 +8,58 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
-import java.util.logging.FileHandler;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import fr.umlv.chathack.contexts.Server;
+import fr.umlv.chathack.contexts.Mailbox;
+import fr.umlv.chathack.contexts.OutboundBudget;
 import fr.umlv.chathack.contexts.ServerContext;
-import fr.umlv.chathack.resources.frames.AuthBddFrame;
-import fr.umlv.chathack.resources.frames.ConnectionAnswerFrame;
-import fr.umlv.chathack.resources.frames.Frame;
-import fr.umlv.chathack.resources.frames.RequestLoginExistFrame;
 import fr.umlv.chathack.resources.readers.BddReader;
 
-public class ChatHackServer implements Server {
-	static private final Logger logger = Logger.getLogger(ChatHackServer.class.getName());
-	static private final int DB_PORT = 7777;
+public class ChatHackServer extends AbstractChatHackServer {
 	
     private final ServerSocketChannel serverSocketChannel;
     private final Selector selector;
     private SelectionKey dbServerKey;
     
-    private final Map<Long, ServerContext> pendingClients; // Clients asking for authentication but not yet authenticated. Key:requestID ; Value:ClientContext
-    private final Map<String, ServerContext> authenticatedClients;
+    private final Reactor[] reactors; // Empty if the clients are served by the main thread.
+    private final Dispatching dispatching;
+    private int nextReactor; // Index of the next reactor for round-robin dispatching.
     
     private final Thread mainThread;
-    private boolean acceptingNewClients;
+    private final Mailbox mailbox; // Commands posted by the reactors to the main thread.
+    private long lastBudgetCheck; // Time of the last check of the outbound budgets of the clients of the main thread, in nanoseconds.
+    
+    /**
+     * Policy used by the acceptor to choose the reactor to which a new client is handed.
+     */
+    public enum Dispatching {
+    	ROUND_ROBIN, LEAST_LOAD
+    }
 	
 	public ChatHackServer(int port) throws IOException {
-		logger.addHandler(new FileHandler("server_log.log"));
-		logger.setUseParentHandlers(false);
+		this(port, 0, Dispatching.ROUND_ROBIN, null);
+	}
+	
+	/**
+	 * Constructor of a server whose clients are spread across a pool of reactors.</br>
+	 * The main thread only accepts new clients and communicates with the database server,
+	 * each reactor has its own selector and thread performing the I/O operations of its clients.</br>
+	 * With 0 reactor, every client is served by the main thread.
+	 * 
+	 * @param port The port on which the server is started.
+	 * @param reactors The number of reactors.
+	 * @param dispatching The policy used to hand the new clients to the reactors.
+	 * @param outboundBudget The budget of bytes queued for each client, or null if it is not bounded.
+	 * 
+	 * @throws IOException
+	 */
+	public ChatHackServer(int port, int reactors, Dispatching dispatching, OutboundBudget outboundBudget) throws IOException {
+		super(outboundBudget);
+		
+		if ( reactors < 0 ) {
+			throw new IllegalArgumentException("The number of reactors can not be negative");
+		}
 		
 		this.selector = Selector.open();
         this.serverSocketChannel = ServerSocketChannel.open();
@@ -48,11 +67,15 @@ public class ChatHackServer implements Server {
         this.serverSocketChannel.configureBlocking(false);
         this.serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
         
-        this.pendingClients = new HashMap<>();
-        this.authenticatedClients = new HashMap<>();
+        this.reactors = new Reactor[reactors];
+        for (var i = 0; i < reactors; i++) {
+        	this.reactors[i] = new Reactor(this, i);
+        }
+        this.dispatching = Objects.requireNonNull(dispatching);
+        this.nextReactor = 0;
         
         this.mainThread = new Thread(this::run);
-        this.acceptingNewClients = true;
+        this.mailbox = new Mailbox(selector, mainThread);
 	}
 	
 	/**
@@ -66,12 +89,16 @@ public class ChatHackServer implements Server {
 	 * 
 	 * @throws IOException if acceptance of a new client failed.
 	 */
+    @Override
     public void launch() throws IOException {
 		if ( mainThread.isAlive() ) {
 			throw new IllegalStateException("Server is already running");
 		}
 		try {
 			init();
+			for (var reactor : reactors) {
+				reactor.start();
+			}
 			mainThread.start();
 		} catch (UncheckedIOException tunneled) {
 			throw tunneled.getCause();
@@ -91,18 +118,45 @@ public class ChatHackServer implements Server {
 	 * Start treating keys in the selector while the associated thread is uninterrupted.
 	 */
     private void run() {
-    	logger.log(Level.INFO, "Server started on port " + serverSocketChannel.socket().getLocalPort());
+    	logger.log(Level.INFO, "Server started on port " + serverSocketChannel.socket().getLocalPort() + " with " + reactors.length + " reactor(s)");
     	System.out.println("Server started on port " + serverSocketChannel.socket().getLocalPort());
     	
 		while ( !Thread.interrupted() ) {
 			try {
-				selector.select(this::treatKey);
+				mailbox.drain();
+				selector.select(this::treatKey, BUDGET_CHECK_PERIOD);
+				lastBudgetCheck = checkOutboundBudgets(selector, lastBudgetCheck);
 			} catch (IOException ioe) {
 				throw new UncheckedIOException(ioe);
 			}
 		}
     }
     
+    /**
+     * Checks the outbound budget of every client registered to the given selector,
+     * if it has not been done for BUDGET_CHECK_PERIOD milliseconds : the clients
+     * over budget for longer than the grace period are disconnected, even if no frame is queued for them.<br>
+     * Must be called by the thread selecting the keys.
+     * 
+     * @param selector The selector of the clients.
+     * @param lastCheck The time of the last check, in nanoseconds.
+     * 
+     * @return The time of the last check, updated if the clients have been checked.
+     */
+    long checkOutboundBudgets(Selector selector, long lastCheck) {
+    	var now = System.nanoTime();
+    	if ( now - lastCheck < BUDGET_CHECK_PERIOD * 1_000_000 ) {
+    		return lastCheck;
+    	}
+    	
+    	for (var key : selector.keys()) {
+    		if ( key.attachment() instanceof ServerContext ctx ) {
+    			ctx.checkOutboundBudget();
+    		}
+    	}
+    	return now;
+    }
+    
     /**
      * Silently closes every socketChannel registered by the selector.
      */
@@ -116,13 +170,20 @@ public class ChatHackServer implements Server {
     
 	/**
 	 * Stop the client thread and interrupts the connection with all connected clients.<br>
-	 * It does not reset client parameters (buffers, queue and frame reader).
+	 * It does not reset client parameters (buffers, queue and frame reader).<br>
+	 * The clients are disconnected by the threads owning them.
 	 */
+	@Override
 	public void stop() {
 		logger.log(Level.INFO, "Stopping the main thread");
 		
-		disconnectAllClients();
-		mainThread.interrupt();
+		for (var reactor : reactors) {
+			reactor.stop();
+		}
+		mailbox.execute(() -> {
+			disconnectAllClients();
+			Thread.currentThread().interrupt();
+		});
 	}
     
     /**
@@ -137,7 +198,7 @@ public class ChatHackServer implements Server {
 		sc.connect(new InetSocketAddress("localhost", DB_PORT));
 		
 		dbServerKey = sc.register(selector, SelectionKey.OP_CONNECT);
-		dbServerKey.attach(new ServerContext(dbServerKey, this, BddReader.class));
+		dbServerKey.attach(new ServerContext(dbServerKey, mailbox, this, BddReader.class));
     }
     
 	/**
@@ -147,7 +208,7 @@ public class ChatHackServer implements Server {
 	 * 
      * @throws UncheckedIOException if acceptance caused an IOException.
 	 */
-	private void treatKey(SelectionKey key) {
+	void treatKey(SelectionKey key) {
 		try {
 			if (key.isValid() && key.isConnectable()) {
 				doConnect(key);
@@ -209,173 +270,62 @@ public class ChatHackServer implements Server {
         }
         
         sc.configureBlocking(false);
+        
+        if ( reactors.length > 0 ) {
+        	nextReactor().register(sc);
+        	return;
+        }
+        
         SelectionKey clientKey = sc.register(selector, SelectionKey.OP_READ);
-        clientKey.attach(new ServerContext(clientKey, this));
+        clientKey.attach(withOutboundBudget(new ServerContext(clientKey, mailbox, this)));
+    }
+    
+    /**
+     * Chooses the reactor to which the next accepted client is handed,
+     * according to the dispatching policy of the server.
+     * 
+     * @return The chosen reactor.
+     */
+    private Reactor nextReactor() {
+    	switch ( dispatching ) {
+    		case LEAST_LOAD :
+    			var leastLoaded = reactors[0];
+    			for (var reactor : reactors) {
+    				if ( reactor.load() < leastLoaded.load() ) {
+    					leastLoaded = reactor;
+    				}
+    			}
+    			return leastLoaded;
+    		case ROUND_ROBIN :
+    		default :
+    			var reactor = reactors[nextReactor];
+    			nextReactor = (nextReactor + 1) % reactors.length;
+    			return reactor;
+    	}
     }
 	
     /**
      * Close the connection with the socketChannel.</br>
      * It does not throw exception if an I/O error occurs.</br>
      * </br>
-     * Removes the client associated to the key from the authenticated list.
+     * The connection is closed by its context, which removes the client from the authenticated list.
      * 
      */
-    private void silentlyClose(SelectionKey key) {
+    void silentlyClose(SelectionKey key) {
     	SocketChannel sc = (SocketChannel) key.channel();
         ServerContext ctx = (ServerContext) key.attachment();
         
-        authenticatedClients.remove(ctx.getLogin());
-        
         try {
         	logger.log(Level.INFO, "Connection closed with " + sc.getRemoteAddress());
-            sc.close();
         } catch (IOException e) {
-        	logger.log(Level.SEVERE, "Error while closing connexion with client", e);
+        	logger.log(Level.INFO, "Connection closed with a client");
         }
+        
+        ctx.close();
     }
     
-    /**
-     * Add the client to the authenticated list.
-     * 
-     * @param login The login's client.
-     * @param ctx The client's context.
-     */
-    private void authenticateClient(String login, ServerContext ctx) {
-    	logger.log(Level.INFO, "Authenticating " + login + " to the server.");
-    	
-    	authenticatedClients.put(login, ctx);
-    }
-    
-    /**
-     * Prints informations about the current state of the server.
-     */
-    public void showInfos() {
-    	System.out.println("There are " + authenticatedClients.size() + " client(s) authenticated to the server :");
-    	authenticatedClients.keySet().forEach(login -> System.out.println("- " + login));
-    }
-    
-    /**
-     * Prevents the server to allow new clients.
-     */
-    public void shutdown() {
-    	System.out.println("The server does not allow new clients anymore.");
-    	log(Level.INFO, "The server does not allow new clients anymore.");
-    	
-    	acceptingNewClients = false;
-    }
-    
-    /**
-     * Stops the server, which will disconnect all clients.
-     */
-    public void shutdownnow() {
-    	System.out.println("The server is going to close now.");
-    	
-    	stop();
+    @Override
+    protected ServerContext databaseContext() {
+    	return (ServerContext) dbServerKey.attachment();
     }
-    
-	@Override
-	public void broadcast(Frame frame) {
-		logger.log(Level.INFO, "Broadcasting a frame : " + frame);
-		
-		for (var client : authenticatedClients.keySet()) {
-			var ctx = authenticatedClients.get(client);
-			
-			ctx.queueMessage(frame);
-		}
-	}
-	
-	@Override
-	public void broadcast(Frame frame, String... logins) {
-		logger.log(Level.INFO, "Broadcasting a frame : " + frame);
-		
-		for (var client : authenticatedClients.keySet()) {
-			var ctx = authenticatedClients.get(client);
-			
-			if ( Arrays.asList(logins).contains(ctx.getLogin()) ) {
-				continue;
-			}
-			
-			ctx.queueMessage(frame);
-		}
-	}
-
-	@Override
-	public void sendFrame(Frame frame, String dest) throws IllegalArgumentException {
-		if ( !authenticatedClients.containsKey(dest) ) {
-			throw new IllegalArgumentException(dest + " is not authenticated to the server");
-		}
-		
-		var ctx = authenticatedClients.get(dest);
-		
-		ctx.queueMessage(frame);
-	}
-	
-	@Override
-	public void sendAuthRequest(String login, String password, ServerContext ctx) {
-		if ( !acceptingNewClients ) {
-			ctx.queueMessage(new ConnectionAnswerFrame((byte) 3));
-			return;
-		}
-		
-		ServerContext dbCtx = (ServerContext) dbServerKey.attachment();
-		
-		long id = System.currentTimeMillis(); // Generating a unique random identifier.
-		
-		pendingClients.put(id, ctx);
-		dbCtx.queueMessage(new AuthBddFrame(id, login, password));
-	}
-
-	@Override
-	public void sendAuthRequest(String login, ServerContext ctx) {
-		if ( !acceptingNewClients ) {
-			ctx.queueMessage(new ConnectionAnswerFrame((byte) 3));
-			return;
-		}
-		
-		ServerContext dbCtx = (ServerContext) dbServerKey.attachment();
-		
-		long id = System.currentTimeMillis(); // Generating a unique random identifier.
-		
-		pendingClients.put(id, ctx);
-		dbCtx.queueMessage(new RequestLoginExistFrame(id, login));
-	}
-	
-	@Override
-	public void tryAuthenticate(long id, boolean positiveAnswer) {
-		if ( !pendingClients.containsKey(id) ) {
-			return;
-		}
-		
-		ServerContext ctx = pendingClients.get(id);
-		pendingClients.remove(id);
-		
-		if ( positiveAnswer ) {
-			if ( ctx.isGuest() ) {
-				// It means that the login with which the client wanted to identify already exists in the database, so we refuse the authentication.
-				ctx.queueMessage(new ConnectionAnswerFrame((byte) 2));
-				return;
-			}
-		} else {
-			if ( !ctx.isGuest() ) {
-				// It means that the pair login/password was invalid.
-				ctx.queueMessage(new ConnectionAnswerFrame((byte) 1));
-				return;
-			}
-		}
-		
-		ctx.confirmAuthentication();
-		authenticateClient(ctx.getLogin(), ctx);
-		ctx.queueMessage(new ConnectionAnswerFrame((byte) 0));
-	}
-
-	@Override
-	public void log(Level level, String msg) {
-		logger.log(level, msg);
-	}
-
-	@Override
-	public void log(Level level, String msg, Throwable thrw) {
-		logger.log(level, msg, thrw);
-	}
-
 }
@@ -0,0 +1,119 @@
+package fr.umlv.chathack.server.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import fr.umlv.chathack.contexts.Mailbox;
+import fr.umlv.chathack.contexts.ServerContext;
+
+/**
+ * A reactor owns a selector and the thread treating its keys.</br>
+ * The acceptor of the server hands the accepted clients to the reactors,
+ * then every I/O operation of a client is performed by the thread of its reactor.</br>
+ * Other threads only communicate with the reactor through its mailbox.
+ */
+class Reactor {
+	private final ChatHackServer server;
+	private final Selector selector;
+	private final AtomicInteger load; // Number of clients handed to this reactor and not yet disconnected.
+
+	private final Thread thread;
+	private final Mailbox mailbox;
+	private long lastBudgetCheck; // Time of the last check of the outbound budgets of the clients, in nanoseconds.
+
+	Reactor(ChatHackServer server, int index) throws IOException {
+		this.server = Objects.requireNonNull(server);
+		this.selector = Selector.open();
+		this.load = new AtomicInteger();
+
+		this.thread = new Thread(this::run, "reactor-" + index);
+		this.mailbox = new Mailbox(selector, thread);
+	}
+
+	/**
+	 * Starts the reactor on a new thread.
+	 */
+	void start() {
+		if ( thread.isAlive() ) {
+			throw new IllegalStateException("Reactor is already running");
+		}
+
+		thread.start();
+	}
+
+	/**
+	 * Disconnects every client of this reactor and stops its thread.</br>
+	 * The clients are disconnected by the reactor's thread.
+	 */
+	void stop() {
+		mailbox.execute(() -> {
+			for (var key : selector.keys()) {
+				server.silentlyClose(key);
+			}
+
+			Thread.currentThread().interrupt();
+		});
+	}
+
+	/**
+	 * Hands an accepted client to this reactor.</br>
+	 * The client is registered to the selector by the reactor's thread.
+	 *
+	 * @param sc The client's socket channel, in non blocking mode.
+	 */
+	void register(SocketChannel sc) {
+		Objects.requireNonNull(sc);
+
+		load.incrementAndGet();
+		mailbox.execute(() -> registerChannel(sc));
+	}
+
+	/**
+	 * Retrieves the number of clients currently served by this reactor.
+	 *
+	 * @return The number of clients.
+	 */
+	int load() {
+		return load.get();
+	}
+
+	/**
+	 * Start treating keys in the selector while the associated thread is uninterrupted.
+	 */
+	private void run() {
+		server.log(Level.INFO, "Reactor " + thread.getName() + " started");
+
+		while ( !Thread.interrupted() ) {
+			try {
+				mailbox.drain();
+				selector.select(server::treatKey, AbstractChatHackServer.BUDGET_CHECK_PERIOD);
+				lastBudgetCheck = server.checkOutboundBudgets(selector, lastBudgetCheck);
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		}
+	}
+
+	/**
+	 * Registers to the selector a client handed by the acceptor.
+	 *
+	 * @param sc The client's socket channel, in non blocking mode.
+	 */
+	private void registerChannel(SocketChannel sc) {
+		try {
+			SelectionKey clientKey = sc.register(selector, SelectionKey.OP_READ);
+			var ctx = new ServerContext(clientKey, mailbox, server);
+			ctx.onClose(load::decrementAndGet); // Whatever the thread and the reason closing the connection.
+			clientKey.attach(server.withOutboundBudget(ctx));
+		} catch (IOException e) {
+			load.decrementAndGet();
+			server.log(Level.SEVERE, "Error while registering a client to " + thread.getName(), e);
+		}
+	}
+}
@@ -4,9 +4,9 @@ import java.util.Objects;
 import java.util.Scanner;
 
 public class UserInput {
-	private final ChatHackServer server;
+	private final AbstractChatHackServer server;
 	
-	public UserInput(ChatHackServer client) {
+	public UserInput(AbstractChatHackServer client) {
 		this.server = Objects.requireNonNull(client);
 	}
 	
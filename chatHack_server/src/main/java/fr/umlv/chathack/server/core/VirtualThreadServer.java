@@ -0,0 +1,199 @@
+package fr.umlv.chathack.server.core;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import fr.umlv.chathack.contexts.OutboundBudget;
+import fr.umlv.chathack.contexts.ServerContext;
+import fr.umlv.chathack.resources.readers.BddReader;
+
+/**
+ * ChatHack server serving each connection with blocking channels and virtual threads.</br>
+ * Every connection (clients and database server) is read by its own virtual thread,
+ * and the frames queued in its context are written by another virtual thread.</br>
+ * The frames are decoded and executed by the same contexts as the ones of ChatHackServer.
+ */
+public class VirtualThreadServer extends AbstractChatHackServer {
+    private final ServerSocketChannel serverSocketChannel;
+    private ServerContext dbContext;
+
+    private final Set<ServerContext> clients; // Contexts of the connections currently served.
+
+    private final Thread acceptThread;
+
+	/**
+	 * Constructor of a server serving each connection with virtual threads.
+	 *
+	 * @param port The port on which the server is started.
+	 * @param outboundBudget The budget of bytes queued for each client, or null if it is not bounded.
+	 *
+	 * @throws IOException
+	 */
+	public VirtualThreadServer(int port, OutboundBudget outboundBudget) throws IOException {
+		super(outboundBudget);
+
+        this.serverSocketChannel = ServerSocketChannel.open();
+        this.serverSocketChannel.bind(new InetSocketAddress(port));
+
+        this.clients = ConcurrentHashMap.newKeySet();
+
+        this.acceptThread = Thread.ofVirtual().name("acceptor").unstarted(this::run);
+	}
+
+	/**
+	 * Starts the server on a new virtual thread.</br>
+	 * Starts by connecting to the database server to which the server will verify the authenticity of the clients.</br>
+	 * <br>
+	 * The server does not stop accepting new clients until server.shutdown() or server.stop() is called.</br>
+	 * </br>
+	 * Informations about the server state can be given with server.showInfos().
+	 *
+	 * @throws IOException if the connection to the database server failed.
+	 */
+	@Override
+	public void launch() throws IOException {
+		if ( acceptThread.isAlive() ) {
+			throw new IllegalStateException("Server is already running");
+		}
+
+		connectToDatabase();
+		acceptThread.start();
+		Thread.ofVirtual().name("budget-checker").start(this::checkOutboundBudgets);
+	}
+
+	/**
+	 * Checks the outbound budget of every client each BUDGET_CHECK_PERIOD milliseconds, until the server is stopped :
+	 * the clients over budget for longer than the grace period are disconnected, even if no frame is queued for them.
+	 */
+	private void checkOutboundBudgets() {
+		while ( serverSocketChannel.isOpen() ) {
+			try {
+				Thread.sleep(BUDGET_CHECK_PERIOD);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			for (var ctx : clients) {
+				ctx.checkOutboundBudget();
+			}
+		}
+	}
+
+	/**
+	 * Accepts new clients and starts serving each of them on its own virtual threads,
+	 * until the server socket is closed.
+	 */
+	private void run() {
+    	logger.log(Level.INFO, "Server started on port " + serverSocketChannel.socket().getLocalPort() + " with virtual threads");
+    	System.out.println("Server started on port " + serverSocketChannel.socket().getLocalPort());
+
+		while ( serverSocketChannel.isOpen() ) {
+			try {
+				SocketChannel sc = serverSocketChannel.accept();
+				Thread.ofVirtual().start(() -> serve(withOutboundBudget(new ServerContext(sc, this))));
+			} catch (ClosedChannelException e) {
+				return; // The server has been stopped.
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, "Error while accepting a client", e);
+			}
+		}
+	}
+
+	/**
+	 * Serves the connection associated to the given context until it is closed :
+	 * the current thread reads the frames while a new virtual thread writes them.
+	 *
+	 * @param ctx The context of the connection.
+	 */
+	private void serve(ServerContext ctx) {
+		clients.add(ctx);
+
+		var writer = Thread.ofVirtual().start(() -> {
+			try {
+				ctx.doBlockingWrite();
+			} catch (IOException | InterruptedException e) {
+				ctx.close();
+			}
+		});
+
+		try {
+			ctx.doBlockingRead();
+		} catch (IOException e) {
+			logger.log(Level.INFO, "Connection lost with a client", e);
+		} finally {
+			writer.interrupt();
+			silentlyClose(ctx);
+		}
+	}
+
+    /**
+     * Connects to the database server, opened in local on port 'DB_PORT',
+     * and starts serving the connection on virtual threads.
+     *
+     * @throws IOException If connection failed.
+     */
+    private void connectToDatabase() throws IOException {
+    	SocketChannel sc;
+    	try {
+    		sc = SocketChannel.open(new InetSocketAddress("localhost", DB_PORT));
+    	} catch (ConnectException e) {
+    		System.err.println("Error : Connection with database server impossible, it musts be opened on port " + DB_PORT);
+    		logger.log(Level.SEVERE, "Connection refused to the server", e);
+    		throw e;
+    	}
+
+    	dbContext = new ServerContext(sc, this, BddReader.class);
+    	Thread.ofVirtual().name("database").start(() -> serve(dbContext));
+
+    	log(Level.INFO, "Connection with database server established");
+    }
+
+    /**
+     * Close the connection associated to the context.</br>
+     * It does not throw exception if an I/O error occurs.</br>
+     * </br>
+     * Removes the client from the authenticated list.
+     *
+     * @param ctx The context of the connection.
+     */
+    private void silentlyClose(ServerContext ctx) {
+    	if ( !clients.remove(ctx) ) {
+    		return; // Already closed.
+    	}
+
+    	removeClient(ctx);
+    	ctx.close();
+    	logger.log(Level.INFO, "Connection closed with " + (Objects.isNull(ctx.getLogin()) ? "a client" : ctx.getLogin()));
+    }
+
+	/**
+	 * Stops accepting clients and interrupts the connection with all connected clients.
+	 */
+	@Override
+	public void stop() {
+		logger.log(Level.INFO, "Stopping the server");
+
+		try {
+			serverSocketChannel.close();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Error while closing the server socket", e);
+		}
+
+		for (var ctx : clients) {
+			silentlyClose(ctx);
+		}
+	}
+
+    @Override
+    protected ServerContext databaseContext() {
+    	return dbContext;
+    }
+}
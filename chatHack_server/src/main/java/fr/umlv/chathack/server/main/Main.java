@@ -1,14 +1,21 @@
 package fr.umlv.chathack.server.main;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import fr.umlv.chathack.server.core.UserInput;
+import fr.umlv.chathack.server.core.VirtualThreadServer;
+import fr.umlv.chathack.server.core.AbstractChatHackServer;
+import fr.umlv.chathack.contexts.OutboundBudget;
+import fr.umlv.chathack.contexts.OutboundBudget.OverflowPolicy;
 import fr.umlv.chathack.server.core.ChatHackServer;
+import fr.umlv.chathack.server.core.ChatHackServer.Dispatching;
 
 public class Main {
 
 	private static void usage() {
-		System.out.println("Usage : ChatHackServer port");
+		System.out.println("Usage : ChatHackServer port [--mode selector|virtual-threads] [--reactors number] [--dispatching round-robin|least-load]"
+				+ " [--outbound-budget bytes] [--overflow drop-oldest-public|drop-new|disconnect] [--overflow-grace seconds]");
 	}
 	
 	/**
@@ -29,8 +36,36 @@ public class Main {
 		return 1 <= port && port <= 65535;
 	}
 	
+	/**
+	 * Check if arg correspond to a valid positive number
+	 * 
+	 * @param arg The string to check
+	 * @return True if the arg corresponds to a positive number
+	 */
+	private static boolean isPositive(String arg) {
+		try {
+			return Integer.parseInt(arg) >= 0;
+		} catch ( NumberFormatException e ) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Check if arg correspond to a valid strictly positive number
+	 * 
+	 * @param arg The string to check
+	 * @return True if the arg corresponds to a strictly positive number
+	 */
+	private static boolean isStrictlyPositive(String arg) {
+		try {
+			return Long.parseLong(arg) > 0;
+		} catch ( NumberFormatException e ) {
+			return false;
+		}
+	}
+	
 	public static void main(String[] args) throws IOException {
-		if ( args.length != 1 ) {
+		if ( args.length < 1 || args.length % 2 != 1 ) {
 			usage();
 			return;
 		}
@@ -41,7 +76,92 @@ public class Main {
 		}
 		
 		int port = Integer.parseInt(args[0]);
-		ChatHackServer server = new ChatHackServer(port);
+		boolean virtualThreads = false;
+		int reactors = 0;
+		Dispatching dispatching = Dispatching.ROUND_ROBIN;
+		long outboundBudget = 0;
+		OverflowPolicy overflow = OverflowPolicy.DROP_OLDEST_PUBLIC;
+		long overflowGrace = 10;
+		
+		for (var i = 1; i < args.length; i += 2) {
+			switch (args[i]) {
+				case "--mode":
+					switch (args[i + 1]) {
+						case "selector":
+							virtualThreads = false;
+							break;
+						case "virtual-threads":
+							virtualThreads = true;
+							break;
+						default:
+							usage();
+							return;
+					}
+					break;
+				case "--reactors":
+					if ( !isPositive(args[i + 1]) ) {
+						System.out.println("Number of reactors must be a positive integer");
+						return;
+					}
+					reactors = Integer.parseInt(args[i + 1]);
+					break;
+				case "--dispatching":
+					switch (args[i + 1]) {
+						case "round-robin":
+							dispatching = Dispatching.ROUND_ROBIN;
+							break;
+						case "least-load":
+							dispatching = Dispatching.LEAST_LOAD;
+							break;
+						default:
+							usage();
+							return;
+					}
+					break;
+				case "--outbound-budget":
+					if ( !isStrictlyPositive(args[i + 1]) ) {
+						System.out.println("Outbound budget must be a strictly positive number of bytes");
+						return;
+					}
+					outboundBudget = Long.parseLong(args[i + 1]);
+					break;
+				case "--overflow":
+					switch (args[i + 1]) {
+						case "drop-oldest-public":
+							overflow = OverflowPolicy.DROP_OLDEST_PUBLIC;
+							break;
+						case "drop-new":
+							overflow = OverflowPolicy.DROP_NEW;
+							break;
+						case "disconnect":
+							overflow = OverflowPolicy.DISCONNECT;
+							break;
+						default:
+							usage();
+							return;
+					}
+					break;
+				case "--overflow-grace":
+					if ( !isPositive(args[i + 1]) ) {
+						System.out.println("Overflow grace period must be a positive number of seconds");
+						return;
+					}
+					overflowGrace = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					usage();
+					return;
+			}
+		}
+		
+		if ( virtualThreads && reactors > 0 ) {
+			System.out.println("Reactors can not be used with virtual threads");
+			return;
+		}
+		
+		OutboundBudget budget = outboundBudget > 0 ? new OutboundBudget(outboundBudget, overflow, overflowGrace, TimeUnit.SECONDS) : null;
+		
+		AbstractChatHackServer server = virtualThreads ? new VirtualThreadServer(port, budget) : new ChatHackServer(port, reactors, dispatching, budget);
 		server.launch();
 		
 		UserInput input = new UserInput(server);